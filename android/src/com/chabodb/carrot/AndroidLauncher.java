@@ -11,6 +11,8 @@ public class AndroidLauncher extends AndroidApplication {
 	protected void onCreate (Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 		AndroidApplicationConfiguration config = new AndroidApplicationConfiguration();
-		initialize(new CarrotGame(), config);
+		// The "physicsThread" extra steps the simulation on its own thread, off unless asked for
+		boolean physicsThread = getIntent().getBooleanExtra("physicsThread", false);
+		initialize(new CarrotGame(null, physicsThread), config);
 	}
 }
@@ -0,0 +1,92 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.utils.Array;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of BodyEditorLoader.attachFixture, the fixtures are destroyed again in the same operation
+ * The baseline attaches the same polygons from shapes built once, so only Box2D work is left
+ * @author Benoit Chabod
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttachFixtureBenchmark {
+    @Param({"ground_grass.png", "carrot.png", "flyMan_jump.png"})
+    public String name;
+
+    GameWorld gameWorld;
+    Body body;
+    FixtureDef fd;
+    float scale;
+    final Array<PolygonShape> shapes = new Array<PolygonShape>();
+
+    @Setup
+    public void setup() {
+        gameWorld = BenchmarkSupport.newWorld();
+        body = gameWorld.world.createBody(new BodyDef());
+        fd = new FixtureDef();
+        scale = gameWorld.sizes.get(name.substring(0, name.indexOf('.'))).x;
+
+        BodyEditorLoader.RigidBodyModel model = gameWorld.physicsLoader.getInternalModel().rigidBodies.get(name);
+        Vector2 origin = new Vector2(model.origin).scl(scale);
+        for (BodyEditorLoader.PolygonModel polygon : model.polygons) {
+            Vector2[] vertices = new Vector2[polygon.vertices.length / 2];
+            for (int i = 0; i < vertices.length; i++)
+                vertices[i] = new Vector2(polygon.vertices[i * 2], polygon.vertices[i * 2 + 1]).scl(scale).sub(origin);
+            PolygonShape shape = new PolygonShape();
+            shape.set(vertices);
+            shapes.add(shape);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (PolygonShape shape : shapes)
+            shape.dispose();
+        gameWorld.dispose();
+    }
+
+    void clearFixtures() {
+        Array<Fixture> fixtures = body.getFixtureList();
+        while (fixtures.size > 0)
+            body.destroyFixture(fixtures.peek());
+    }
+
+    @Benchmark
+    public void baseline() {
+        for (int i = 0; i < shapes.size; i++) {
+            fd.shape = shapes.get(i);
+            body.createFixture(fd);
+        }
+        clearFixtures();
+    }
+
+    @Benchmark
+    public void attachFixture() {
+        gameWorld.physicsLoader.attachFixture(body, name, fd, scale);
+        clearFixtures();
+    }
+}
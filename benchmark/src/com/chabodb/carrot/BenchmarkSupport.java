@@ -0,0 +1,132 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.GlyphLayout;
+import com.badlogic.gdx.graphics.g2d.ParticleEffect;
+import com.badlogic.gdx.graphics.g2d.Sprite;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.Contact;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Shared setup of the JMH benchmarks, which run outside of any libGDX application loop
+ * @author Benoit Chabod
+ */
+final class BenchmarkSupport {
+    static final long SEED = 42;
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Sets up the libGDX globals (files, logging) once, the headless loop itself is stopped right away
+     */
+    static synchronized void boot() {
+        if (Gdx.app != null)
+            return;
+        new HeadlessApplication(new ApplicationAdapter() {
+            @Override
+            public void create() {
+                Gdx.app.exit();
+            }
+        });
+        Gdx.app.setLogLevel(Application.LOG_ERROR);
+    }
+
+    static TextureAtlas.TextureAtlasData atlasData() {
+        boot();
+        return new TextureAtlas.TextureAtlasData(Gdx.files.internal(Assets.ATLAS), Gdx.files.internal(""), false);
+    }
+
+    /**
+     * Creates a simulation on a fixed level, the camera is not sized so no level is generated yet
+     * @return A new GameWorld
+     */
+    static GameWorld newWorld() {
+        return new GameWorld(new SimulationBenchmark.BenchmarkGame(), atlasData(), SEED);
+    }
+
+    /**
+     * Creates a GameScreen drawing into a NullBatch, with the real sprite sizes and particle effects
+     * but no textures, so its draw() method can run on the headless backend
+     * @param game The game the screen belongs to
+     * @param atlasData The parsed texture atlas
+     * @param seed The seed of the level
+     * @return A screen ready to draw, once its gameWorld is set
+     */
+    static GameScreen headlessScreen(CarrotGame game, TextureAtlas.TextureAtlasData atlasData, long seed) {
+        GameScreen screen = new GameScreen(game, seed);
+        screen.batch = new NullBatch();
+        for (TextureAtlas.TextureAtlasData.Region region : atlasData.getRegions()) {
+            float realScale = GameWorld.spriteScale(region.name);
+            Sprite sprite = new Sprite();
+            sprite.setSize(region.width * realScale, region.height * realScale);
+            screen.sprites.put(region.name, sprite);
+        }
+        screen.resolveSprites();
+        screen.layout = new GlyphLayout();
+        FileHandle fontFile = Gdx.files.classpath("com/badlogic/gdx/utils/arial-15.fnt");
+        screen.font = new BitmapFont(new BitmapFont.BitmapFontData(fontFile, false), new TextureRegion(new NullTexture(256, 128)), false);
+        screen.font.getData().setScale(0.10f);
+        screen.warmUpScore();
+        screen.carrotEffects = new ParticleEffects(
+                GameScreen.loadParticle(new NullParticleEffect(), "carrot_eaten.party"), GameScreen.CARROT_EFFECTS);
+        screen.fireEffects = new ParticleEffects(
+                GameScreen.loadParticle(new NullParticleEffect(), "fire.party"), GameScreen.FIRE_EFFECTS);
+        return screen;
+    }
+
+    /**
+     * Particle effect whose images are never uploaded
+     */
+    static class NullParticleEffect extends ParticleEffect {
+        @Override
+        protected Texture loadTexture(FileHandle file) {
+            return new NullTexture(32, 32);
+        }
+    }
+
+    /**
+     * Moves a body right under the feet of the bunny, which is where its only fixture is
+     * @param gameWorld The simulation
+     * @param body The body to move, its first fixture must be a polygon
+     */
+    static void placeUnderBunny(GameWorld gameWorld, Body body) {
+        PolygonShape shape = (PolygonShape) body.getFixtureList().first().getShape();
+        Vector2 vertex = new Vector2();
+        float top = -Float.MAX_VALUE;
+        for (int i = 0; i < shape.getVertexCount(); i++) {
+            shape.getVertex(i, vertex);
+            top = Math.max(top, vertex.y);
+        }
+        Vector2 feet = gameWorld.bunny.getPosition();
+        body.setTransform(feet.x, feet.y - top + 0.05f, 0);
+    }
+
+    /**
+     * Finds the contact Box2D created between the bunny and another body
+     * @param gameWorld The simulation, stepped at least once since the body was placed
+     * @param other The body touching the bunny
+     * @return The contact between both bodies
+     */
+    static Contact findContact(GameWorld gameWorld, Body other) {
+        Array<Contact> contacts = gameWorld.world.getContactList();
+        for (Contact contact : contacts) {
+            Body a = contact.getFixtureA().getBody();
+            Body b = contact.getFixtureB().getBody();
+            if ((a == gameWorld.bunny && b == other) || (a == other && b == gameWorld.bunny))
+                return contact;
+        }
+        throw new IllegalStateException("No contact between the bunny and " + other.getUserData());
+    }
+}
@@ -0,0 +1,70 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the collision callbacks for one contact between the bunny and another body
+ * The baseline only reads the user data of both bodies, which any dispatch has to do
+ * @author Benoit Chabod
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactDispatchBenchmark {
+    @Param({"ground_grass.png", "flyMan_jump.png"})
+    public String other;
+
+    GameWorld gameWorld;
+    Contact contact;
+
+    @Setup
+    public void setup() {
+        gameWorld = BenchmarkSupport.newWorld();
+        Body body = gameWorld.createBody(EntityTag.kindOf(other), 10, 10, 0, BodyDef.BodyType.StaticBody);
+        BenchmarkSupport.placeUnderBunny(gameWorld, body);
+        gameWorld.world.step(GameWorld.STEP_TIME, GameWorld.VELOCITY_ITERATIONS, GameWorld.POSITION_ITERATIONS);
+        contact = BenchmarkSupport.findContact(gameWorld, body);
+        contact.setEnabled(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        gameWorld.dispose();
+    }
+
+    @Benchmark
+    public void baseline(Blackhole blackhole) {
+        blackhole.consume(contact.getFixtureA().getBody().getUserData());
+        blackhole.consume(contact.getFixtureB().getBody().getUserData());
+    }
+
+    @Benchmark
+    public void preSolve() {
+        gameWorld.collisionFilter.preSolve(contact, null);
+    }
+
+    @Benchmark
+    public void postSolve() {
+        gameWorld.collisionFilter.postSolve(contact, null);
+    }
+}
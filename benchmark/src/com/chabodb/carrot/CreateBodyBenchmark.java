@@ -0,0 +1,65 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of GameWorld.createBody, the body is destroyed again in the same operation
+ * The baseline creates and destroys a bare body, without looking up its size or attaching fixtures
+ * @author Benoit Chabod
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateBodyBenchmark {
+    @Param({"ground_grass.png", "carrot.png", "flyMan_jump.png"})
+    public String name;
+
+    GameWorld gameWorld;
+    BodyDef bodyDef;
+    int kind;
+
+    @Setup
+    public void setup() {
+        gameWorld = BenchmarkSupport.newWorld();
+        kind = EntityTag.kindOf(name);
+        bodyDef = new BodyDef();
+        bodyDef.type = BodyDef.BodyType.StaticBody;
+        bodyDef.fixedRotation = true;
+    }
+
+    @TearDown
+    public void tearDown() {
+        gameWorld.dispose();
+    }
+
+    @Benchmark
+    public void baseline() {
+        Body body = gameWorld.world.createBody(bodyDef);
+        body.setTransform(10, 10, 0);
+        gameWorld.world.destroyBody(body);
+    }
+
+    @Benchmark
+    public void createBody() {
+        Body body = gameWorld.createBody(kind, 10, 10, 0, BodyDef.BodyType.StaticBody);
+        gameWorld.world.destroyBody(body);
+    }
+}
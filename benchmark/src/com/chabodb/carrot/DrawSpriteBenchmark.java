@@ -0,0 +1,59 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.graphics.g2d.Sprite;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of submitting one sprite through GameScreen.drawSprite, drawn into a NullBatch
+ * The baseline draws the same sprite with no rotation update
+ * @author Benoit Chabod
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawSpriteBenchmark {
+    @Param({"bunny1_walk1", "cloud"})
+    public String name;
+
+    GameScreen screen;
+    NullBatch batch;
+    Sprite sprite;
+    float x;
+
+    @Setup
+    public void setup() {
+        screen = BenchmarkSupport.headlessScreen(null, BenchmarkSupport.atlasData(), BenchmarkSupport.SEED);
+        batch = (NullBatch) screen.batch;
+        sprite = screen.sprites.get(name);
+    }
+
+    @Benchmark
+    public float baseline() {
+        x = (x + 1) % 60;
+        sprite.setPosition(x, 10);
+        sprite.draw(batch);
+        return batch.checksum;
+    }
+
+    @Benchmark
+    public float drawSprite() {
+        x = (x + 1) % 60;
+        screen.drawSprite(sprite, x, 10, 0);
+        return batch.checksum;
+    }
+}
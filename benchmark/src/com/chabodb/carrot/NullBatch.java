@@ -0,0 +1,67 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Affine2;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.NumberUtils;
+
+/**
+ * Batch that discards everything it is given, to measure the CPU side of drawing without OpenGL
+ * Submitted vertices are summed up so the JIT cannot remove the work done to compute them
+ * @author Benoit Chabod
+ */
+public class NullBatch implements Batch {
+    final Color color = new Color(1, 1, 1, 1);
+    final Matrix4 projection = new Matrix4();
+    final Matrix4 transform = new Matrix4();
+    boolean drawing;
+    float checksum;
+    int draws;
+
+    @Override public void begin() { drawing = true; }
+    @Override public void end() { drawing = false; }
+    @Override public void setColor(Color tint) { color.set(tint); }
+    @Override public void setColor(float r, float g, float b, float a) { color.set(r, g, b, a); }
+    @Override public void setColor(float color) { Color.rgba8888ToColor(this.color, Integer.reverseBytes(NumberUtils.floatToIntColor(color))); }
+    @Override public Color getColor() { return color; }
+    @Override public float getPackedColor() { return color.toFloatBits(); }
+
+    @Override
+    public void draw(Texture texture, float[] spriteVertices, int offset, int count) {
+        draws++;
+        for (int i = offset; i < offset + count; i++)
+            checksum += spriteVertices[i];
+    }
+
+    @Override public void draw(Texture texture, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation, int srcX, int srcY, int srcWidth, int srcHeight, boolean flipX, boolean flipY) { draws++; checksum += x + y; }
+    @Override public void draw(Texture texture, float x, float y, float width, float height, int srcX, int srcY, int srcWidth, int srcHeight, boolean flipX, boolean flipY) { draws++; checksum += x + y; }
+    @Override public void draw(Texture texture, float x, float y, int srcX, int srcY, int srcWidth, int srcHeight) { draws++; checksum += x + y; }
+    @Override public void draw(Texture texture, float x, float y, float width, float height, float u, float v, float u2, float v2) { draws++; checksum += x + y; }
+    @Override public void draw(Texture texture, float x, float y) { draws++; checksum += x + y; }
+    @Override public void draw(Texture texture, float x, float y, float width, float height) { draws++; checksum += x + y; }
+    @Override public void draw(TextureRegion region, float x, float y) { draws++; checksum += x + y; }
+    @Override public void draw(TextureRegion region, float x, float y, float width, float height) { draws++; checksum += x + y; }
+    @Override public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation) { draws++; checksum += x + y; }
+    @Override public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation, boolean clockwise) { draws++; checksum += x + y; }
+    @Override public void draw(TextureRegion region, float width, float height, Affine2 transform) { draws++; checksum += width + height; }
+
+    @Override public void flush() { }
+    @Override public void disableBlending() { }
+    @Override public void enableBlending() { }
+    @Override public void setBlendFunction(int srcFunc, int dstFunc) { }
+    @Override public int getBlendSrcFunc() { return 0; }
+    @Override public int getBlendDstFunc() { return 0; }
+    @Override public Matrix4 getProjectionMatrix() { return projection; }
+    @Override public Matrix4 getTransformMatrix() { return transform; }
+    @Override public void setProjectionMatrix(Matrix4 projection) { this.projection.set(projection); }
+    @Override public void setTransformMatrix(Matrix4 transform) { this.transform.set(transform); }
+    @Override public void setShader(ShaderProgram shader) { }
+    @Override public ShaderProgram getShader() { return null; }
+    @Override public boolean isBlendingEnabled() { return true; }
+    @Override public boolean isDrawing() { return drawing; }
+    @Override public void dispose() { }
+}
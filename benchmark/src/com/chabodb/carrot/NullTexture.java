@@ -0,0 +1,37 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+
+/**
+ * Texture that is never uploaded, so fonts and particle effects can be set up without OpenGL
+ * Only its size is known, which is all the CPU side of drawing needs
+ * @author Benoit Chabod
+ */
+public class NullTexture extends Texture {
+    int width, height;
+
+    public NullTexture(int width, int height) {
+        super(GL20.GL_TEXTURE_2D, 0, new PixmapTextureData(new Pixmap(width, height, Pixmap.Format.RGBA8888), null, false, true, false));
+    }
+
+    @Override
+    public void load(TextureData data) {
+        width = data.getWidth();
+        height = data.getHeight();
+        data.consumePixmap().dispose();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,97 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.JsonWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Plays a recorded game again on the headless backend, as fast as possible, and checks that it ends
+ * like it was recorded: after the same number of steps, with the same score and the bunny at the same place
+ * Recordings come from the game (InputRecording.FILE in its local storage) or from SimulationBenchmark --record
+ * The result is printed as JSON, the exit code is 1 when the replay does not match
+ * @author Benoit Chabod
+ */
+public class ReplayRunner extends ApplicationAdapter {
+    // Steps played after the end of the recording before giving up, when the replay does not die in time
+    static final int EXTRA_STEPS = 3600;
+
+    final String path;
+
+    /**
+     * Main constructor for the ReplayRunner class
+     * @param path Path of the recording
+     */
+    public ReplayRunner(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public void create() {
+        Gdx.app.setLogLevel(Application.LOG_ERROR);
+        boolean matches;
+        try {
+            matches = run();
+        } catch (IOException e) {
+            e.printStackTrace();
+            matches = false;
+        }
+        System.exit(matches ? 0 : 1);
+    }
+
+    boolean run() throws IOException {
+        InputRecording recording = InputRecording.read(Gdx.files.absolute(new File(path).getAbsolutePath()));
+        SimulationBenchmark.BenchmarkGame game = new SimulationBenchmark.BenchmarkGame();
+        TextureAtlas.TextureAtlasData atlasData = new TextureAtlas.TextureAtlasData(Gdx.files.internal(Assets.ATLAS), Gdx.files.internal(""), false);
+        GameWorld gameWorld = new GameWorld(game, atlasData, recording.seed);
+        gameWorld.startReplay(recording);
+
+        long start = System.nanoTime();
+        while (!game.lost && gameWorld.replayStep < recording.steps + EXTRA_STEPS)
+            gameWorld.update(GameWorld.STEP_TIME);
+        long nanos = System.nanoTime() - start;
+
+        Vector2 end = gameWorld.bunny.getPosition();
+        boolean matches = game.lost && gameWorld.replayStep == recording.steps && game.lastScore == recording.score
+                && end.x == recording.endX && end.y == recording.endY;
+        StringWriter writer = new StringWriter();
+        JsonWriter json = new JsonWriter(writer);
+        json.setOutputType(JsonWriter.OutputType.json);
+        json.object()
+                .set("seed", recording.seed)
+                .set("input", recording.tilt ? "tilt" : "keys")
+                .set("matches", matches)
+                .set("lost", game.lost)
+                .set("steps", gameWorld.replayStep)
+                .set("recordedSteps", recording.steps)
+                .set("score", game.lost ? game.lastScore : gameWorld.score + gameWorld.scoreCarrots)
+                .set("recordedScore", recording.score)
+                .set("endX", end.x)
+                .set("endY", end.y)
+                .set("recordedEndX", recording.endX)
+                .set("recordedEndY", recording.endY)
+                .set("replayMs", nanos / 1e6)
+                .set("stepsPerSecond", gameWorld.replayStep / (nanos / 1e9))
+                .pop();
+        json.close();
+        System.out.println(writer.toString());
+        gameWorld.dispose();
+        return matches;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: ReplayRunner <recording>");
+            System.exit(2);
+        }
+        new HeadlessApplication(new ReplayRunner(args[0]), new HeadlessApplicationConfiguration());
+    }
+}
@@ -0,0 +1,49 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.backends.headless.mock.input.MockInput;
+import com.badlogic.gdx.physics.box2d.Body;
+
+/**
+ * Headless input that steers the bunny like a player would, towards the next platform to land on
+ * The script only depends on the state of the simulation, so a run is reproducible for a given seed
+ * @author Benoit Chabod
+ */
+public class ScriptedInput extends MockInput {
+    boolean left, right;
+
+    /**
+     * Decides which keys are held during the next frame
+     * @param gameWorld The simulation being driven
+     */
+    void script(GameWorld gameWorld) {
+        Body bunny = gameWorld.bunny;
+        GameWorld.Level level = gameWorld.level;
+        float x = bunny.getPosition().x + gameWorld.sizes.get("bunny1_walk1").x/2;
+        float y = bunny.getPosition().y;
+        boolean falling = bunny.getLinearVelocity().y < 0;
+        // Aim for the platform the bunny can land on next: below it when falling, above it otherwise
+        float target = gameWorld.camera.position.x;
+        for (int i = 0; i < level.materialisedPlatforms; i++) {
+            float top = level.platforms.y(i) + level.platformHeight;
+            if (falling && top < y) {
+                target = level.platforms.x(i) + level.platformWidth/2;
+            } else if (top > y) {
+                if (!falling)
+                    target = level.platforms.x(i) + level.platformWidth/2;
+                break;
+            }
+        }
+        left = x > target + 1;
+        right = x < target - 1;
+    }
+
+    @Override
+    public boolean isKeyPressed(int key) {
+        if (key == Input.Keys.LEFT)
+            return left;
+        if (key == Input.Keys.RIGHT)
+            return right;
+        return false;
+    }
+}
@@ -0,0 +1,313 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonWriter;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Headless benchmark of the game simulation (physics, level stream, collisions and camera follow)
+ * It drives a GameWorld for a fixed number of frames with scripted input and reports
+ * frame time percentiles, body and contact counts and allocations per frame as JSON
+ * With --render the frame also draws the GameScreen into a NullBatch, so the render loop is measured too
+ * It lives in the core package so it can drive the simulation internals directly
+ * @author Benoit Chabod
+ */
+public class SimulationBenchmark extends ApplicationAdapter {
+    float frameTime = 1f / 60f;
+    int frames = 3600;
+    int warmup = 600;
+    long seed = 42;
+    float worldWidth = 65;
+    float worldHeight = 65 * 16 / 9f;
+    String output;
+    float maxP99 = -1;
+    long maxAllocBytes = -1;
+    boolean render;
+    // Where to write the recording of the first run, or null
+    String record;
+
+    TextureAtlas.TextureAtlasData atlasData;
+    ScriptedInput input;
+    BenchmarkGame game;
+    GameWorld gameWorld;
+    GameScreen screen;
+    com.sun.management.ThreadMXBean threads;
+    long threadId;
+    int runs, bestScore;
+    long lastNanos, lastBytes;
+    // Whether the last frame added a chunk or started a new run, which allocate
+    boolean lastLoading;
+
+    long[] frameNanos, frameBytes;
+    // Bytes allocated by the frames that neither add a chunk nor start a run
+    long[] steadyBytes;
+    int steadyFrames;
+    int[] activeBodies, totalBodies, contacts, draws;
+
+    /**
+     * Game which records the death of the bunny instead of switching screens
+     */
+    static class BenchmarkGame extends CarrotGame {
+        boolean lost;
+        int lastScore;
+
+        @Override
+        public void switchToLost(int s) {
+            lost = true;
+            lastScore = s;
+        }
+    }
+
+    /**
+     * Main constructor for the SimulationBenchmark class
+     * @param args Command line options, see the usage message
+     */
+    public SimulationBenchmark(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length)
+                usage("Missing value for " + option);
+            String value = args[++i];
+            if (option.equals("--frames"))
+                frames = Integer.parseInt(value);
+            else if (option.equals("--warmup"))
+                warmup = Integer.parseInt(value);
+            else if (option.equals("--seed"))
+                seed = Long.parseLong(value);
+            else if (option.equals("--world-width"))
+                worldWidth = Float.parseFloat(value);
+            else if (option.equals("--world-height"))
+                worldHeight = Float.parseFloat(value);
+            else if (option.equals("--fps"))
+                frameTime = 1f / Float.parseFloat(value);
+            else if (option.equals("--out"))
+                output = value;
+            else if (option.equals("--max-p99-ms"))
+                maxP99 = Float.parseFloat(value);
+            else if (option.equals("--max-alloc-bytes"))
+                maxAllocBytes = Long.parseLong(value);
+            else if (option.equals("--render"))
+                render = Boolean.parseBoolean(value);
+            else if (option.equals("--record"))
+                record = value;
+            else
+                usage("Unknown option " + option);
+        }
+    }
+
+    static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Options: --frames N --warmup N --seed N --world-width W --world-height H --fps N --out FILE --max-p99-ms MS --max-alloc-bytes N --render true|false --record FILE");
+        System.exit(2);
+    }
+
+    @Override
+    public void create() {
+        Gdx.app.setLogLevel(Application.LOG_ERROR);
+        input = new ScriptedInput();
+        Gdx.input = input;
+        game = new BenchmarkGame();
+        atlasData = new TextureAtlas.TextureAtlasData(Gdx.files.internal(Assets.ATLAS), Gdx.files.internal(""), false);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadId = Thread.currentThread().getId();
+
+        frameNanos = new long[frames];
+        frameBytes = new long[frames];
+        steadyBytes = new long[frames];
+        activeBodies = new int[frames];
+        totalBodies = new int[frames];
+        contacts = new int[frames];
+        draws = new int[frames];
+
+        if (render) {
+            screen = BenchmarkSupport.headlessScreen(game, atlasData, seed);
+            screen.camera.viewportWidth = worldWidth;
+            screen.camera.viewportHeight = worldHeight;
+        }
+        startRun();
+        for (int i = 0; i < warmup; i++) {
+            frame();
+        }
+        if (screen != null)
+            ((NullBatch) screen.batch).draws = 0;
+        for (int i = 0; i < frames; i++) {
+            frame();
+            frameNanos[i] = lastNanos;
+            frameBytes[i] = lastBytes;
+            if (!lastLoading)
+                steadyBytes[steadyFrames++] = lastBytes;
+            activeBodies[i] = gameWorld.getActiveBodyCount();
+            totalBodies[i] = gameWorld.world.getBodyCount();
+            contacts[i] = gameWorld.world.getContactCount();
+            if (screen != null) {
+                NullBatch batch = (NullBatch) screen.batch;
+                draws[i] = batch.draws;
+                batch.draws = 0;
+            }
+        }
+        gameWorld.dispose();
+
+        boolean failed = maxP99 >= 0 && percentile(frameNanos, 0.99) / 1e6 > maxP99;
+        // Frames streaming in a new chunk or starting a run allocate, every other frame must stay under the gate
+        long steadyMax = percentile(Arrays.copyOf(steadyBytes, steadyFrames), 1.0);
+        if (maxAllocBytes >= 0 && steadyMax > maxAllocBytes) {
+            System.err.println("A steady state frame allocates " + steadyMax + " bytes");
+            failed = true;
+        }
+        try {
+            report();
+        } catch (IOException e) {
+            e.printStackTrace();
+            failed = true;
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Starts a new run on the next level, a run ends when the bunny dies
+     * The simulation is reset in place like the game does, rather than created again
+     */
+    void startRun() {
+        game.lost = false;
+        if (gameWorld == null) {
+            gameWorld = new GameWorld(game, atlasData, seed + runs);
+            if (record != null)
+                gameWorld.recording = new InputRecording();
+            if (screen != null)
+                screen.gameWorld = gameWorld;
+            gameWorld.resize(worldWidth, worldHeight);
+        } else {
+            // The world keeps its size and resizes itself as it resets
+            gameWorld.reset(seed + runs);
+            if (screen != null)
+                screen.clouds.reset(seed + runs);
+        }
+        if (screen != null)
+            screen.clouds.resize(worldWidth, worldHeight, 0);
+        runs++;
+    }
+
+    /**
+     * Simulates one frame and measures the time spent and the bytes allocated on this thread
+     */
+    void frame() {
+        input.script(gameWorld);
+        int chunks = gameWorld.level.chunksAdded;
+        long bytes = threads.getThreadAllocatedBytes(threadId);
+        long time = System.nanoTime();
+        gameWorld.update(frameTime);
+        if (screen != null)
+            screen.draw(frameTime);
+        lastNanos = System.nanoTime() - time;
+        lastBytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+        lastLoading = game.lost || gameWorld.level.chunksAdded != chunks;
+        if (game.lost) {
+            bestScore = Math.max(bestScore, game.lastScore);
+            if (gameWorld.recording != null)
+                saveRecording();
+            startRun();
+        }
+    }
+
+    /**
+     * Writes the recording of the first run, which ReplayRunner can play again
+     */
+    void saveRecording() {
+        InputRecording recording = gameWorld.recording;
+        gameWorld.recording = null;
+        try {
+            recording.write(Gdx.files.absolute(new File(record).getAbsolutePath()));
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Cannot write " + record, e);
+        }
+    }
+
+    static long percentile(long[] samples, double p) {
+        if (samples.length == 0)
+            return 0;
+        long[] sorted = Arrays.copyOf(samples, samples.length);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    static double mean(long[] samples) {
+        double sum = 0;
+        for (long s : samples)
+            sum += s;
+        return samples.length == 0 ? 0 : sum / samples.length;
+    }
+
+    static long[] widen(int[] samples) {
+        long[] wide = new long[samples.length];
+        for (int i = 0; i < samples.length; i++)
+            wide[i] = samples[i];
+        return wide;
+    }
+
+    void writeNanos(JsonWriter json, String name, long[] samples) throws IOException {
+        json.object(name)
+                .set("mean", mean(samples) / 1e6)
+                .set("p50", percentile(samples, 0.50) / 1e6)
+                .set("p90", percentile(samples, 0.90) / 1e6)
+                .set("p99", percentile(samples, 0.99) / 1e6)
+                .set("max", percentile(samples, 1.0) / 1e6)
+                .pop();
+    }
+
+    void writeCounts(JsonWriter json, String name, long[] samples) throws IOException {
+        json.object(name)
+                .set("mean", mean(samples))
+                .set("p50", percentile(samples, 0.50))
+                .set("p99", percentile(samples, 0.99))
+                .set("max", percentile(samples, 1.0))
+                .pop();
+    }
+
+    /**
+     * Writes the results as JSON, to the output file if one was given or else to the console
+     */
+    void report() throws IOException {
+        Writer writer = output != null ? new FileWriter(output) : new StringWriter();
+        JsonWriter json = new JsonWriter(writer);
+        json.setOutputType(JsonWriter.OutputType.json);
+        json.object()
+                .set("seed", seed)
+                .set("frames", frames)
+                .set("fps", 1 / frameTime)
+                .set("render", render)
+                .set("warmupFrames", warmup)
+                .set("runs", runs)
+                .set("bestScore", bestScore);
+        writeNanos(json, "frameTimeMs", frameNanos);
+        writeCounts(json, "activeBodies", widen(activeBodies));
+        writeCounts(json, "totalBodies", widen(totalBodies));
+        writeCounts(json, "contacts", widen(contacts));
+        if (render)
+            writeCounts(json, "drawsPerFrame", widen(draws));
+        writeCounts(json, "allocatedBytesPerFrame", frameBytes);
+        writeCounts(json, "allocatedBytesPerSteadyFrame", Arrays.copyOf(steadyBytes, steadyFrames));
+        json.pop();
+        json.close();
+        if (output == null)
+            System.out.println(writer.toString());
+    }
+
+    public static void main(String[] args) {
+        HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        new HeadlessApplication(new SimulationBenchmark(args), config);
+    }
+}
@@ -0,0 +1,72 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.BitmapFontLoader;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.ParticleEffect;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Names of the files the game loads, all of them go through the AssetManager of CarrotGame
+ * Screens only ask the manager for loaded assets, so showing a screen never reads a file
+ * @author Benoit Chabod
+ */
+public final class Assets {
+    // Atlas of the game, generated by the desktop AtlasPacker with the regions of GameScreen.REGIONS only
+    public static final String ATLAS = "game.atlas";
+    // Bitmap font baked from pamela.ttf by the desktop FontBaker, shared by all the screens
+    public static final String FONT = "pamela.fnt";
+    public static final int FONT_SIZE = 80;
+    // Collision fixtures compiled by the desktop PhysicsCompiler, the editor output is the fallback
+    public static final String PHYSICS = "physics.bin";
+    public static final String PHYSICS_SOURCE = "physics.json";
+    static final String CARROT_PARTICLE = "carrot_eaten.party";
+    static final String FIRE_PARTICLE = "fire.party";
+    static final String TITLE = "title.png";
+    static final String BUTTON_PLAY = "button_play.png";
+    static final String BUTTON_SCORES = "button_scores.png";
+    static final String SCORES_TITLE = "scores.png";
+    static final String GAME_OVER = "game_over.png";
+
+    private Assets() {
+    }
+
+    /**
+     * Gives the names of the bodies the game takes from the physics model
+     * @return The fixture names, in no particular order
+     */
+    public static String[] physicsBodies() {
+        Array<String> names = new Array<String>(String.class);
+        for (String name : EntityTag.FIXTURES) {
+            if (name != null)
+                names.add(name);
+        }
+        return names.toArray();
+    }
+
+    /**
+     * Registers the loaders the game needs and queues every asset, nothing is loaded yet
+     * @param manager The manager to load the assets with
+     */
+    static void queue(AssetManager manager) {
+        manager.setLoader(BodyEditorLoader.class, new PhysicsLoader(manager.getFileHandleResolver()));
+
+        BitmapFontLoader.BitmapFontParameter fontParameter = new BitmapFontLoader.BitmapFontParameter();
+        fontParameter.minFilter = Texture.TextureFilter.Linear;
+        fontParameter.magFilter = Texture.TextureFilter.Linear;
+        manager.load(FONT, BitmapFont.class, fontParameter);
+
+        manager.load(TITLE, Texture.class);
+        manager.load(BUTTON_PLAY, Texture.class);
+        manager.load(BUTTON_SCORES, Texture.class);
+        manager.load(SCORES_TITLE, Texture.class);
+        manager.load(GAME_OVER, Texture.class);
+
+        manager.load(ATLAS, TextureAtlas.class);
+        manager.load(PHYSICS, BodyEditorLoader.class);
+        manager.load(CARROT_PARTICLE, ParticleEffect.class);
+        manager.load(FIRE_PARTICLE, ParticleEffect.class);
+    }
+}
@@ -10,6 +10,8 @@ import com.badlogic.gdx.physics.box2d.FixtureDef;
 import com.badlogic.gdx.physics.box2d.PolygonShape;
 import com.badlogic.gdx.utils.JsonReader;
 import com.badlogic.gdx.utils.JsonValue;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -27,8 +29,14 @@ public class BodyEditorLoader {
     // Model
     private final Model model;
 
+    // Shapes scaled for a body, computed once per name and scale
+    private final Map<String, List<ScaledShapes>> shapeCache = new HashMap<String, List<ScaledShapes>>();
+
+    // Box2D limits on polygons, b2_maxPolygonVertices and the distance under which it welds vertices
+    private static final int MAX_POLYGON_VERTICES = 8;
+    private static final float WELD_DISTANCE = 0.5f * 0.005f;
+
     // Reusable stuff
-    private final List<Vector2> vectorPool = new ArrayList<Vector2>();
     private final PolygonShape polygonShape = new PolygonShape();
     private final CircleShape circleShape = new CircleShape();
     private final Vector2 vec = new Vector2();
@@ -47,6 +55,15 @@ public class BodyEditorLoader {
         model = readJson(str);
     }
 
+    /**
+     * Reads a model compiled by the desktop PhysicsCompiler, see
+     * {@link #readBinary(ByteBuffer)} for the format.
+     */
+    public BodyEditorLoader(ByteBuffer buffer) {
+        if (buffer == null) throw new NullPointerException("buffer is null");
+        model = readBinary(buffer);
+    }
+
     // -------------------------------------------------------------------------
     // Public API
     // -------------------------------------------------------------------------
@@ -76,41 +93,47 @@ public class BodyEditorLoader {
      * @param scale The desired scale of the body. The default width is 1.
      */
     public void attachFixture(Body body, String name, FixtureDef fd, float scale) {
-        RigidBodyModel rbModel = model.rigidBodies.get(name);
-        if (rbModel == null) throw new RuntimeException("Name '" + name + "' was not found.");
-
-        Vector2 origin = vec.set(rbModel.origin).scl(scale);
-
-        for (int i=0, n=rbModel.polygons.size(); i<n; i++) {
-            PolygonModel polygon = rbModel.polygons.get(i);
-            Vector2[] vertices = polygon.buffer;
+        ScaledShapes shapes = getScaledShapes(name, scale);
 
-            for (int ii=0, nn=vertices.length; ii<nn; ii++) {
-                vertices[ii] = newVec().set(polygon.vertices.get(ii)).scl(scale);
-                vertices[ii].sub(origin);
-            }
-
-            polygonShape.set(vertices);
+        for (int i=0, n=shapes.polygons.length; i<n; i++) {
+            polygonShape.set(shapes.polygons[i]);
             fd.shape = polygonShape;
             body.createFixture(fd);
-
-            for (int ii=0, nn=vertices.length; ii<nn; ii++) {
-                free(vertices[ii]);
-            }
         }
 
-        for (int i=0, n=rbModel.circles.size(); i<n; i++) {
-            CircleModel circle = rbModel.circles.get(i);
-            Vector2 center = newVec().set(circle.center).scl(scale);
-            float radius = circle.radius * scale;
-
-            circleShape.setPosition(center);
-            circleShape.setRadius(radius);
+        float[] circles = shapes.circles;
+        for (int i=0, n=circles.length; i<n; i+=3) {
+            circleShape.setPosition(vec.set(circles[i], circles[i+1]));
+            circleShape.setRadius(circles[i+2]);
             fd.shape = circleShape;
             body.createFixture(fd);
+        }
+    }
+
+    /**
+     * Gets the shapes of the given name at the given scale, relative to the
+     * body reference point. They are computed and checked against the Box2D
+     * limits the first time only, later calls with the same name and scale
+     * return the same instance.
+     */
+    public ScaledShapes getScaledShapes(String name, float scale) {
+        List<ScaledShapes> cached = shapeCache.get(name);
+        if (cached != null) {
+            for (int i=0, n=cached.size(); i<n; i++) {
+                if (cached.get(i).scale == scale) return cached.get(i);
+            }
+        }
+
+        RigidBodyModel rbModel = model.rigidBodies.get(name);
+        if (rbModel == null) throw new RuntimeException("Name '" + name + "' was not found.");
 
-            free(center);
+        ScaledShapes shapes = new ScaledShapes(rbModel, scale);
+        if (cached == null) {
+            cached = new ArrayList<ScaledShapes>(1);
+            shapeCache.put(name, cached);
         }
+        cached.add(shapes);
+        return shapes;
     }
 
     /**
@@ -139,7 +162,8 @@ public class BodyEditorLoader {
     /**
      * <b>For advanced users only.</b> Lets you access the internal model of
      * this loader and modify it. Be aware that any modification is permanent
-     * and that you should really know what you are doing.
+     * and that you should really know what you are doing. Shapes already
+     * scaled by attachFixture() do not see the modification.
      */
     public Model getInternalModel() {
         return model;
@@ -162,8 +186,7 @@ public class BodyEditorLoader {
     }
 
     public static class PolygonModel {
-        public final List<Vector2> vertices = new ArrayList<Vector2>();
-        private Vector2[] buffer; // used to avoid allocation in attachFixture()
+        public float[] vertices; // x0, y0, x1, y1...
     }
 
     public static class CircleModel {
@@ -171,6 +194,63 @@ public class BodyEditorLoader {
         public float radius;
     }
 
+    /**
+     * Shapes of a rigid body at a given scale, ready to be given to Box2D.
+     * Polygons are flat (x, y) arrays, circles are (x, y, radius) triples.
+     */
+    public static class ScaledShapes {
+        public final float scale;
+        public final float[][] polygons;
+        public final float[] circles;
+
+        ScaledShapes(RigidBodyModel rbModel, float scale) {
+            this.scale = scale;
+            float originX = rbModel.origin.x * scale;
+            float originY = rbModel.origin.y * scale;
+
+            polygons = new float[rbModel.polygons.size()][];
+            for (int i=0; i<polygons.length; i++) {
+                float[] vertices = rbModel.polygons.get(i).vertices;
+                float[] polygon = new float[vertices.length];
+                for (int ii=0, nn=vertices.length; ii<nn; ii+=2) {
+                    polygon[ii] = vertices[ii] * scale - originX;
+                    polygon[ii+1] = vertices[ii+1] * scale - originY;
+                }
+                checkPolygon(rbModel.name, i, polygon);
+                polygons[i] = polygon;
+            }
+
+            circles = new float[rbModel.circles.size() * 3];
+            for (int i=0, n=rbModel.circles.size(); i<n; i++) {
+                CircleModel circle = rbModel.circles.get(i);
+                circles[i*3] = circle.center.x * scale - originX;
+                circles[i*3+1] = circle.center.y * scale - originY;
+                circles[i*3+2] = circle.radius * scale;
+            }
+        }
+
+        /**
+         * Box2D aborts on a polygon it cannot use, so it is rejected here
+         * with a message instead.
+         */
+        private static void checkPolygon(String name, int index, float[] polygon) {
+            int count = polygon.length / 2;
+            if (count > MAX_POLYGON_VERTICES) throw new RuntimeException("Polygon " + index + " of '" + name + "' has " + count + " vertices, Box2D takes " + MAX_POLYGON_VERTICES + " at most.");
+
+            int distinct = 0;
+            for (int i=0; i<count; i++) {
+                boolean welded = false;
+                for (int j=0; j<i && !welded; j++) {
+                    float dx = polygon[i*2] - polygon[j*2];
+                    float dy = polygon[i*2+1] - polygon[j*2+1];
+                    welded = dx*dx + dy*dy <= WELD_DISTANCE * WELD_DISTANCE;
+                }
+                if (!welded) distinct++;
+            }
+            if (distinct < 3) throw new RuntimeException("Polygon " + index + " of '" + name + "' is degenerate at this scale.");
+        }
+    }
+
     // -------------------------------------------------------------------------
     // Json reading process
     // -------------------------------------------------------------------------
@@ -204,16 +284,14 @@ public class BodyEditorLoader {
 
             PolygonModel polygon = new PolygonModel();
             rbModel.polygons.add(polygon);
+            polygon.vertices = new float[polygonsElem.size * 2];
 
             JsonValue vertexElem = polygonsElem.child();
-            for (; vertexElem != null; vertexElem = vertexElem.next()) {
-                float x = vertexElem.getFloat("x");
-                float y = vertexElem.getFloat("y");
-                polygon.vertices.add(new Vector2(x, y));
+            for (int i=0; vertexElem != null; vertexElem = vertexElem.next(), i+=2) {
+                polygon.vertices[i] = vertexElem.getFloat("x");
+                polygon.vertices[i+1] = vertexElem.getFloat("y");
             }
 
-            polygon.buffer = new Vector2[polygon.vertices.size()];
-
         }
 
         // circles
@@ -232,14 +310,58 @@ public class BodyEditorLoader {
     }
 
     // -------------------------------------------------------------------------
-    // Helpers
+    // Binary reading process
     // -------------------------------------------------------------------------
 
-    private Vector2 newVec() {
-        return vectorPool.isEmpty() ? new Vector2() : vectorPool.remove(0);
+    public static final int BINARY_MAGIC = 0x43504859; // "CPHY"
+    public static final int BINARY_VERSION = 2;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Reads a compiled model, big endian:
+     * magic, version, body count, then for each body its name, whether it has
+     * an image path (a boolean byte) and that path, origin (x, y), polygon count, each polygon as a vertex count followed
+     * by its (x, y) pairs, circle count and each circle as (x, y, radius).
+     * Counts are ints, strings are a short length followed by UTF-8 bytes.
+     */
+    private Model readBinary(ByteBuffer buffer) {
+        if (buffer.getInt() != BINARY_MAGIC) throw new RuntimeException("Not a compiled physics model.");
+        int version = buffer.getInt();
+        if (version != BINARY_VERSION) throw new RuntimeException("Compiled physics model version " + version + ", expected " + BINARY_VERSION + ".");
+
+        Model m = new Model();
+        for (int i=0, n=buffer.getInt(); i<n; i++) {
+            RigidBodyModel rbModel = new RigidBodyModel();
+            rbModel.name = readString(buffer);
+            rbModel.imagePath = buffer.get() != 0 ? readString(buffer) : null;
+            rbModel.origin.x = buffer.getFloat();
+            rbModel.origin.y = buffer.getFloat();
+
+            for (int ii=0, nn=buffer.getInt(); ii<nn; ii++) {
+                PolygonModel polygon = new PolygonModel();
+                polygon.vertices = new float[buffer.getInt() * 2];
+                buffer.asFloatBuffer().get(polygon.vertices);
+                buffer.position(buffer.position() + polygon.vertices.length * 4);
+                rbModel.polygons.add(polygon);
+            }
+
+            for (int ii=0, nn=buffer.getInt(); ii<nn; ii++) {
+                CircleModel circle = new CircleModel();
+                circle.center.x = buffer.getFloat();
+                circle.center.y = buffer.getFloat();
+                circle.radius = buffer.getFloat();
+                rbModel.circles.add(circle);
+            }
+
+            m.rigidBodies.put(rbModel.name, rbModel);
+        }
+
+        return m;
     }
 
-    private void free(Vector2 v) {
-        vectorPool.add(v);
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
     }
-}
\ No newline at end of file
+}
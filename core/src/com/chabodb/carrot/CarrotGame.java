@@ -1,27 +1,166 @@
 package com.chabodb.carrot;
 
 import com.badlogic.gdx.Game;
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.io.IOException;
 
 /**
  * Main game class that handles the transitions between different subscreens
  * @author Benoit Chabod
  */
 public class CarrotGame extends Game {
+    // Owns every asset of the game, screens only get handles from it
+    AssetManager assets;
+    LoadingScreen loadingScreen;
+    // Screens are created once and reused, a new game resets the GameScreen in place
     MenuScreen menuScreen;
+    GameScreen gameScreen;
+    LostScreen lostScreen;
+    ScoreScreen scoreScreen;
+    BitmapFont font;
+    HighscoreStore highscores;
+    // Number of the current game, so its score is only recorded once
+    int runId;
+    long loadingStartTime;
+    // When the current screen was set, until its first frame is drawn
+    long screenSetTime;
+    boolean firstFramePending;
+    // Recorded game to play once loaded instead of opening the menu, or null
+    String replayPath;
+    // Set while a recorded game is played, its score is not kept
+    boolean replaying;
+    // Whether the simulation steps on its own thread, see PhysicsThread
+    boolean threadedPhysics;
+
+    public CarrotGame() {
+    }
+
+    /**
+     * Constructor of a game with options
+     * @param replayPath Absolute path of a recorded game to play once loaded (see InputRecording), or null
+     * @param threadedPhysics Whether the simulation steps on its own thread rather than the render thread
+     */
+    public CarrotGame(String replayPath, boolean threadedPhysics) {
+        this.replayPath = replayPath;
+        this.threadedPhysics = threadedPhysics;
+    }
 
     @Override
     public void create() {
+        loadingStartTime = TimeUtils.nanoTime();
+        highscores = new HighscoreStore(Gdx.files.local(HighscoreStore.FILE), Gdx.files.local(HighscoreStore.LEGACY_FILE));
+        highscores.load();
+        assets = new AssetManager();
+        Assets.queue(assets);
+        loadingScreen = new LoadingScreen(this);
+        setScreen(loadingScreen);
+    }
+
+    /**
+     * Called by the LoadingScreen once every asset is loaded, opens the main menu
+     */
+    void finishLoading() {
+        Gdx.app.log("CarrotGame", "Assets loaded after " + TimeUtils.nanosToMillis(TimeUtils.timeSinceNanos(loadingStartTime)) + " ms");
+        font = assets.get(Assets.FONT, BitmapFont.class);
         menuScreen = new MenuScreen(this);
+        lostScreen = new LostScreen(this);
+        scoreScreen = new ScoreScreen(this);
         switchToMenu();
+        if (replayPath != null)
+            switchToReplay(Gdx.files.absolute(replayPath));
+        loadingScreen.dispose();
+        loadingScreen = null;
+    }
+
+    @Override
+    public void setScreen(Screen screen) {
+        screenSetTime = TimeUtils.nanoTime();
+        firstFramePending = true;
+        super.setScreen(screen);
     }
 
     /**
-     * Launches the game
+     * Renders the current screen and logs how long the first frame of a new screen took to come
+     */
+    @Override
+    public void render() {
+        // A screen can be set while the previous one renders, its own first frame comes next time
+        Screen rendered = screen;
+        super.render();
+        if (firstFramePending && rendered != null && rendered == screen) {
+            firstFramePending = false;
+            long millis = TimeUtils.nanosToMillis(TimeUtils.timeSinceNanos(screenSetTime));
+            Gdx.app.log("CarrotGame", screen.getClass().getSimpleName() + " first frame after " + millis + " ms");
+        }
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        if (menuScreen != null) {
+            menuScreen.dispose();
+            lostScreen.dispose();
+            scoreScreen.dispose();
+        }
+        if (gameScreen != null)
+            gameScreen.dispose();
+        assets.dispose();
+        highscores.dispose();
+    }
+
+    /**
+     * Launches the game on a random level
      */
     public void switchToGame() {
+        switchToGame(MathUtils.random.nextLong());
+    }
+
+    /**
+     * Launches the game on a given level
+     * @param seed The seed of the level, useful to reproduce a run
+     */
+    public void switchToGame(long seed) {
+        menuScreen.isMenuDisplayed = false;
+        replaying = false;
+        runId++;
+        if (gameScreen == null) {
+            gameScreen = new GameScreen(this, seed);
+        } else {
+            long start = TimeUtils.nanoTime();
+            gameScreen.reset(seed);
+            Gdx.app.log("CarrotGame", "Game reset in " + TimeUtils.nanosToMillis(TimeUtils.timeSinceNanos(start)) + " ms");
+        }
+        this.setScreen(gameScreen);
+    }
+
+    /**
+     * Plays a recorded game again, on its level and with its input
+     * @param file The recording, written by the GameScreen at the end of each game
+     */
+    public void switchToReplay(FileHandle file) {
+        InputRecording recording;
+        try {
+            recording = InputRecording.read(file);
+        } catch (IOException e) {
+            Gdx.app.error("CarrotGame", "Cannot read the recording " + file.path(), e);
+            return;
+        }
+        Gdx.app.log("CarrotGame", "Replaying " + recording.steps + " steps of level " + recording.seed);
         menuScreen.isMenuDisplayed = false;
-        this.setScreen(new GameScreen(this));
+        replaying = true;
+        runId++;
+        // The replay resets the game once on the recorded level, then showing the screen places the clouds
+        if (gameScreen == null)
+            gameScreen = new GameScreen(this, recording.seed);
+        gameScreen.replay(recording);
+        this.setScreen(gameScreen);
     }
 
     /**
@@ -37,15 +176,19 @@ public class CarrotGame extends Game {
      */
     public void switchToScores() {
         menuScreen.isMenuDisplayed = false;
-        this.setScreen(new ScoreScreen(this));
+        this.setScreen(scoreScreen);
     }
 
     /**
-     * Displays the game over screen
+     * Records the score and displays the game over screen, the score is written in the background
+     * The score of a replayed game is not recorded
      * @param s The final score of the player
      */
     public void switchToLost(int s) {
-        this.setScreen(new LostScreen(this, s));
+        if (!replaying)
+            highscores.submit(runId, s, TimeUtils.millis());
+        lostScreen.score = s;
+        this.setScreen(lostScreen);
     }
 
 }
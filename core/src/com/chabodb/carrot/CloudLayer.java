@@ -0,0 +1,121 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.RandomXS128;
+
+/**
+ * Background layer of clouds drifting at several parallax depths, purely visual
+ * A fixed set of clouds is recycled: a cloud leaving the view at the bottom comes back at the top,
+ * and one leaving on the left comes back on the right, so the cost of the layer never grows
+ * @author Benoit Chabod
+ */
+class CloudLayer {
+    static final int DEPTHS = 3;
+    static final int CLOUDS_PER_DEPTH = 3;
+    // Per depth, from the farthest: share of the camera motion followed, size and transparency
+    static final float[] PARALLAX = {0.2f, 0.45f, 0.75f};
+    static final float[] SCALE = {0.5f, 0.75f, 1.0f};
+    static final float[] ALPHA = {0.12f, 0.18f, 0.25f};
+    // Drift of the nearest clouds (in world units per second)
+    static final float SPEED = 4.8f;
+
+    // Clouds of depth d are stored from d * CLOUDS_PER_DEPTH, y is in the space of their depth
+    final float[] x = new float[DEPTHS * CLOUDS_PER_DEPTH];
+    final float[] y = new float[DEPTHS * CLOUDS_PER_DEPTH];
+    final RandomXS128 random;
+    final float width, height;
+    float viewWidth, viewHeight;
+
+    /**
+     * Main constructor for the CloudLayer class
+     * @param width Width of the nearest clouds
+     * @param height Height of the nearest clouds
+     * @param seed Seed of the placement of the clouds
+     */
+    CloudLayer(float width, float height, long seed) {
+        this.width = width;
+        this.height = height;
+        random = new RandomXS128(seed);
+    }
+
+    /**
+     * Places the clouds from a new seed, from the next resize() on
+     * @param seed Seed of the placement of the clouds
+     */
+    void reset(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Scatters the clouds over a view of the given size
+     * @param worldWidth Width of the visible world
+     * @param worldHeight Height of the visible world
+     * @param cameraBottom Bottom of the camera window
+     */
+    void resize(float worldWidth, float worldHeight, float cameraBottom) {
+        viewWidth = worldWidth;
+        viewHeight = worldHeight;
+        for (int d = 0; d < DEPTHS; d++) {
+            float span = span(d);
+            for (int k = 0; k < CLOUDS_PER_DEPTH; k++) {
+                int i = d * CLOUDS_PER_DEPTH + k;
+                x[i] = random.nextFloat() * (viewWidth + width) - width;
+                y[i] = cameraBottom * PARALLAX[d] + (k + random.nextFloat()) * span / CLOUDS_PER_DEPTH - height * SCALE[d];
+            }
+        }
+    }
+
+    /**
+     * Height of the band a depth recycles its clouds over, a whole view plus one cloud
+     */
+    private float span(int d) {
+        return viewHeight + height * SCALE[d];
+    }
+
+    /**
+     * Makes the clouds drift and recycles the ones that left the view
+     * @param delta Time elapsed since the last frame (in seconds)
+     * @param cameraBottom Bottom of the camera window
+     */
+    void update(float delta, float cameraBottom) {
+        for (int d = 0; d < DEPTHS; d++) {
+            float w = width * SCALE[d];
+            float h = height * SCALE[d];
+            float shift = cameraBottom * PARALLAX[d];
+            for (int k = 0; k < CLOUDS_PER_DEPTH; k++) {
+                int i = d * CLOUDS_PER_DEPTH + k;
+                x[i] -= SPEED * PARALLAX[d] * delta;
+                if (x[i] + w < 0)
+                    x[i] += viewWidth + w;
+                if (y[i] - shift + h < 0) {
+                    y[i] += span(d);
+                    x[i] = random.nextFloat() * (viewWidth + w) - w;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the whole layer in one pass, farthest clouds first, with the batch tint as transparency
+     * @param batch The batch to draw into, between begin() and end()
+     * @param region The cloud image
+     * @param cameraLeft Left of the camera window
+     * @param cameraBottom Bottom of the camera window
+     */
+    void draw(Batch batch, TextureRegion region, float cameraLeft, float cameraBottom) {
+        batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        for (int d = 0; d < DEPTHS; d++) {
+            float w = width * SCALE[d];
+            float h = height * SCALE[d];
+            float offset = cameraBottom - cameraBottom * PARALLAX[d];
+            batch.setColor(1, 1, 1, ALPHA[d]);
+            for (int k = 0; k < CLOUDS_PER_DEPTH; k++) {
+                int i = d * CLOUDS_PER_DEPTH + k;
+                batch.draw(region, cameraLeft + x[i], offset + y[i], w, h);
+            }
+        }
+        batch.setColor(1, 1, 1, 1);
+    }
+}
@@ -0,0 +1,75 @@
+package com.chabodb.carrot;
+
+/**
+ * Bounded queue of the commands the render thread sends to a world stepping on a PhysicsThread
+ * Commands are stored in preallocated parallel arrays, so sending one never allocates
+ * When the queue is full the render thread waits, the physics thread empties it at every step
+ * @author Benoit Chabod
+ */
+class CommandQueue {
+    // Types of command
+    static final int KEYS = 0;   // value: the direction held on the keyboard
+    static final int TILT = 1;   // x: the pitch of the device
+    static final int RESIZE = 2; // x, y: the size of the visible world
+    static final int PROFILE = 3; // value: 1 to record the steps, 0 to stop
+    static final int COPY_PROFILE = 4; // copies the steps recorded so far, for the render thread to save
+
+    // Must be a power of two
+    static final int CAPACITY = 64;
+
+    private final int[] types = new int[CAPACITY];
+    private final int[] values = new int[CAPACITY];
+    private final float[] xs = new float[CAPACITY];
+    private final float[] ys = new float[CAPACITY];
+    private int head, size;
+
+    /**
+     * Appends a command, waiting for room if the queue is full
+     * @param type The type of command
+     * @param value Its integer argument
+     * @param x Its first float argument
+     * @param y Its second float argument
+     */
+    synchronized void push(int type, int value, float x, float y) {
+        while (size == CAPACITY) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        int index = (head + size) & (CAPACITY - 1);
+        types[index] = type;
+        values[index] = value;
+        xs[index] = x;
+        ys[index] = y;
+        size++;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    synchronized int firstType() {
+        return types[head];
+    }
+
+    synchronized int firstValue() {
+        return values[head];
+    }
+
+    synchronized float firstX() {
+        return xs[head];
+    }
+
+    synchronized float firstY() {
+        return ys[head];
+    }
+
+    synchronized void removeFirst() {
+        head = (head + 1) & (CAPACITY - 1);
+        size--;
+        notifyAll();
+    }
+}
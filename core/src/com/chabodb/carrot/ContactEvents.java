@@ -0,0 +1,67 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.physics.box2d.Body;
+
+/**
+ * Preallocated ring buffer of the gameplay events raised by the collision callbacks
+ * Box2D callbacks only append events here, they are applied once the world step is over
+ * A body raises at most one event per step, so repeated contacts during a step are ignored
+ * The last slot is kept for ENEMY_HIT, so an event ending the game is never dropped when items fill the ring
+ * @author Benoit Chabod
+ */
+class ContactEvents {
+    // Types of event
+    static final int PICKUP = 0;
+    static final int SPRING = 1;
+    static final int JETPACK = 2;
+    static final int ENEMY_HIT = 3;
+
+    // Must be a power of two
+    static final int CAPACITY = 32;
+
+    private final int[] types = new int[CAPACITY];
+    private final Body[] bodies = new Body[CAPACITY];
+    private int head, size;
+
+    /**
+     * Appends an event, unless the body already raised one during this step
+     * @param type The type of event
+     * @param body The body the bunny collided with
+     * @param step The current step of the simulation
+     */
+    void push(int type, Body body, int step) {
+        EntityTag tag = EntityTag.of(body);
+        if (tag.eventStep == step)
+            return;
+        if (size == CAPACITY || (size == CAPACITY - 1 && type != ENEMY_HIT)) {
+            // The ring only fills up if far more bodies than the level holds touch the bunny in a single step
+            // When it is full, the event in the last slot already ends the game
+            Gdx.app.error("ContactEvents", "Dropped a contact event, the ring is full");
+            return;
+        }
+        tag.eventStep = step;
+        int index = (head + size) & (CAPACITY - 1);
+        types[index] = type;
+        bodies[index] = body;
+        size++;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int firstType() {
+        return types[head];
+    }
+
+    Body firstBody() {
+        return bodies[head];
+    }
+
+    void removeFirst() {
+        bodies[head] = null;
+        head = (head + 1) & (CAPACITY - 1);
+        size--;
+    }
+}
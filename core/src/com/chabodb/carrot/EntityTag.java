@@ -0,0 +1,75 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+
+/**
+ * Compact user data attached to every body: the kind of entity and a few state flags
+ * Kinds are small integers so collisions can be dispatched with a table lookup
+ * @author Benoit Chabod
+ */
+class EntityTag {
+    // Kinds of entity
+    static final int BUNNY = 0;
+    static final int GROUND = 1;
+    static final int PLATFORM = 2;
+    static final int CARROT = 3;
+    static final int SPRING = 4;
+    static final int JETPACK = 5;
+    static final int ENEMY = 6;
+    static final int KINDS = 7;
+
+    // State flags
+    static final int USED = 1; // Eaten carrot, released spring or picked up jetpack
+
+    // Fixture (in physics.json) and sprite (in the atlas) of each kind, the ground has none
+    static final String[] FIXTURES = {"bunny1_walk1.png", null, "ground_grass.png", "carrot.png", "spring.png", "jetpack.png", "flyMan_jump.png"};
+    static final String[] SPRITES = {"bunny1_walk1", null, "ground_grass", "carrot", "spring", "jetpack", "flyMan_jump"};
+
+    final int kind;
+    int flags;
+    // Step during which this body last raised a contact event
+    int eventStep = -1;
+    // Position before the last step, to interpolate what is drawn
+    float prevX, prevY;
+
+    EntityTag(int kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * Remembers the current position of the body as its position before the next step
+     * @param body The body this tag is attached to
+     */
+    void savePosition(Body body) {
+        Vector2 position = body.getPosition();
+        prevX = position.x;
+        prevY = position.y;
+    }
+
+    boolean isUsed() {
+        return (flags & USED) != 0;
+    }
+
+    /**
+     * Gives the tag of a body
+     * @param body A body created by the GameWorld
+     * @return The tag stored as user data
+     */
+    static EntityTag of(Body body) {
+        return (EntityTag) body.getUserData();
+    }
+
+    /**
+     * Finds the kind of entity using a given fixture
+     * @param fixture The name of the fixture in physics.json
+     * @return The kind of entity, or -1 if none uses it
+     */
+    static int kindOf(String fixture) {
+        for (int kind = 0; kind < KINDS; kind++) {
+            if (fixture.equals(FIXTURES[kind]))
+                return kind;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,171 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Records where the time of each frame goes, phase by phase, along with the drawing and physics counters
+ * The last CAPACITY frames are kept in preallocated arrays, so recording never allocates
+ * While it is disabled, start() and lap() return right away, the game does not pay for it
+ * @author Benoit Chabod
+ */
+class FrameProfiler {
+    // Phases of a frame, the simulation ones add up over the substeps of the frame
+    static final int INPUT = 0;
+    static final int PHYSICS = 1;
+    static final int GAMEPLAY = 2;
+    static final int LEVEL = 3;
+    static final int PARTICLES = 4;
+    static final int DRAW = 5;
+    static final int PHASES = 6;
+    static final String[] PHASE_NAMES = {"input", "physics", "gameplay", "level", "particles", "draw"};
+
+    // Frames kept, a power of two (about 17 seconds at 60 frames per second)
+    static final int CAPACITY = 1024;
+
+    // Also read by the physics thread, which records its steps into a profiler of its own
+    volatile boolean enabled;
+    // Frames recorded since the profiler was enabled, the slot of a frame is its number modulo CAPACITY
+    int frames;
+    int current;
+    long frameStart;
+    final long[] frameNanos = new long[CAPACITY];
+    final long[] phaseNanos = new long[CAPACITY * PHASES];
+    final int[] renderCalls = new int[CAPACITY];
+    final int[] drawCalls = new int[CAPACITY];
+    final int[] textureBindings = new int[CAPACITY];
+    final int[] bodies = new int[CAPACITY];
+    final int[] contacts = new int[CAPACITY];
+
+    /**
+     * Starts or stops recording, the frames recorded before are dropped when it starts again
+     * @param enabled Whether frames are recorded
+     */
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled)
+            frames = 0;
+    }
+
+    /**
+     * Starts recording a new frame
+     */
+    void beginFrame() {
+        if (!enabled)
+            return;
+        current = frames & (CAPACITY - 1);
+        for (int phase = 0; phase < PHASES; phase++)
+            phaseNanos[current * PHASES + phase] = 0;
+        frameStart = TimeUtils.nanoTime();
+    }
+
+    /**
+     * Gives the time a phase starts from
+     * @return The current time (in nanoseconds), or 0 when disabled
+     */
+    long start() {
+        return enabled ? TimeUtils.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time elapsed since a mark to a phase of the current frame
+     * @param phase The phase the time was spent in
+     * @param since The mark given by start() or by the last lap()
+     * @return The current time, the mark of the next phase
+     */
+    long lap(int phase, long since) {
+        if (!enabled)
+            return 0;
+        long now = TimeUtils.nanoTime();
+        phaseNanos[current * PHASES + phase] += now - since;
+        return now;
+    }
+
+    /**
+     * Ends the current frame and stores its counters
+     * @param renderCalls Batch flushes
+     * @param drawCalls OpenGL draw calls
+     * @param textureBindings OpenGL texture binds
+     * @param bodies Bodies in the physics world
+     * @param contacts Contacts in the physics world
+     */
+    void endFrame(int renderCalls, int drawCalls, int textureBindings, int bodies, int contacts) {
+        if (!enabled)
+            return;
+        frameNanos[current] = TimeUtils.nanoTime() - frameStart;
+        this.renderCalls[current] = renderCalls;
+        this.drawCalls[current] = drawCalls;
+        this.textureBindings[current] = textureBindings;
+        this.bodies[current] = bodies;
+        this.contacts[current] = contacts;
+        frames++;
+    }
+
+    /**
+     * Copies the frames recorded so far into another profiler, which can then be saved while this one records
+     * @param copy The profiler to overwrite, it is left disabled
+     */
+    void copyTo(FrameProfiler copy) {
+        copy.enabled = false;
+        copy.frames = frames;
+        copy.current = current;
+        copy.frameStart = frameStart;
+        System.arraycopy(frameNanos, 0, copy.frameNanos, 0, CAPACITY);
+        System.arraycopy(phaseNanos, 0, copy.phaseNanos, 0, CAPACITY * PHASES);
+        System.arraycopy(renderCalls, 0, copy.renderCalls, 0, CAPACITY);
+        System.arraycopy(drawCalls, 0, copy.drawCalls, 0, CAPACITY);
+        System.arraycopy(textureBindings, 0, copy.textureBindings, 0, CAPACITY);
+        System.arraycopy(bodies, 0, copy.bodies, 0, CAPACITY);
+        System.arraycopy(contacts, 0, copy.contacts, 0, CAPACITY);
+    }
+
+    /**
+     * Gives the number of frames kept
+     */
+    int size() {
+        return Math.min(frames, CAPACITY);
+    }
+
+    /**
+     * Gives the slot of a kept frame
+     * @param i Index of the frame, from the oldest one kept
+     * @return The slot of the frame in the arrays
+     */
+    int slot(int i) {
+        return (frames - size() + i) & (CAPACITY - 1);
+    }
+
+    long phase(int slot, int phase) {
+        return phaseNanos[slot * PHASES + phase];
+    }
+
+    /**
+     * Writes the frames kept as CSV, oldest first, times are in nanoseconds
+     * @param file The file to write, it is replaced
+     */
+    void dump(FileHandle file) throws IOException {
+        Writer writer = file.writer(false, "UTF-8");
+        try {
+            writer.write("frame,frame_ns");
+            for (String name : PHASE_NAMES)
+                writer.write("," + name + "_ns");
+            writer.write(",render_calls,draw_calls,texture_bindings,bodies,contacts\n");
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < size(); i++) {
+                int slot = slot(i);
+                line.setLength(0);
+                line.append(frames - size() + i).append(',').append(frameNanos[slot]);
+                for (int phase = 0; phase < PHASES; phase++)
+                    line.append(',').append(phase(slot, phase));
+                line.append(',').append(renderCalls[slot]).append(',').append(drawCalls[slot]).append(',').append(textureBindings[slot]);
+                line.append(',').append(bodies[slot]).append(',').append(contacts[slot]).append('\n');
+                writer.append(line);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -1,608 +1,574 @@
 package com.chabodb.carrot;
 
-import com.badlogic.gdx.Game;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.Screen;
-import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
-import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.graphics.g2d.ParticleEffect;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
-import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
-import com.badlogic.gdx.math.Matrix4;
-import com.badlogic.gdx.physics.box2d.Body;
-import com.badlogic.gdx.physics.box2d.BodyDef;
-import com.badlogic.gdx.physics.box2d.Box2DDebugRenderer;
-import com.badlogic.gdx.physics.box2d.Contact;
-import com.badlogic.gdx.physics.box2d.ContactImpulse;
-import com.badlogic.gdx.physics.box2d.ContactListener;
-import com.badlogic.gdx.physics.box2d.Fixture;
-import com.badlogic.gdx.physics.box2d.FixtureDef;
-import com.badlogic.gdx.physics.box2d.Manifold;
-import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
 import com.badlogic.gdx.utils.viewport.ExtendViewport;
-import com.badlogic.gdx.physics.box2d.Box2D;
-import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.physics.box2d.World;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
 
 /**
  * Complex class inheriting Screen that handles the gameplay
- * Physics and graphics are done here, in the show() overridden method
+ * The simulation is done by a GameWorld, this class draws its snapshots in the render() overridden method
+ * The GameWorld is updated before each frame, or steps on a PhysicsThread while frames are drawn
+ * Moving things are drawn between their last two simulated positions, so motion stays smooth at any frame rate
+ * The screen lives as long as the game, a new game resets it in place instead of loading everything again
  * @author Benoit Chabod
  */
 public class GameScreen implements Screen {
     final HashMap<String, Sprite> sprites = new HashMap<String, Sprite>();
+    // Sprites drawn every frame, resolved once so drawing never looks them up by name
+    Sprite bunnySprite, platformSprite, carrotSprite, springSprite, springOutSprite, jetpackSprite, cloudSprite, enemySprite;
     TextureAtlas textureAtlas;
-    SpriteBatch batch;
-    OrthographicCamera camera;
+    Batch batch;
+    final OrthographicCamera camera = new OrthographicCamera();
     ExtendViewport viewport;
-    World world;
-    BodyEditorLoader physicsLoader;
-    Box2DDebugRenderer debugRenderer;
-    Body bunny;
-    Body ground;
-    Level level;
-    CustomListener collisionFilter;
+    GameWorld gameWorld;
     CarrotGame game;
     BitmapFont font;
     GlyphLayout layout;
-    int score, scoreCarrots;
-    int counterJetpack = 0;
-    double timeElapsed = 0.0f;
-    ParticleEffect carrotParticle, fireParticle;
+    long seed;
+    // Maximum number of effects of each kind playing at once
+    static final int CARROT_EFFECTS = 4;
+    static final int FIRE_EFFECTS = 2;
+    ParticleEffects carrotEffects, fireEffects;
+    // Fire of the jetpack the bunny is wearing, null when it wears none
+    ParticleEffect fire;
+    CloudLayer clouds;
+    // Baked platforms, left null where there is no OpenGL and platforms go through the batch
+    PlatformCaches platformCaches;
+    // Text of the score, only built and laid out again when the score changes
+    final StringBuilder scoreText = new StringBuilder();
+    int shownScore = -1;
+    // Items picked up that already started their effect
+    int seenCarrots, seenJetpacks;
+    // Snapshot of the simulation drawn during the current frame
+    WorldSnapshot snapshot;
+    // Steps the simulation on its own thread, or null when it is updated on the render thread
+    PhysicsThread physicsThread;
+    boolean lostReported;
+    // Size of the visible world the simulation was last given by this screen
+    float worldWidth, worldHeight;
+    // Time spent in each phase of the frames, and the debug overlay toggled with F3 or a three finger touch
+    final FrameProfiler profiler = new FrameProfiler();
+    ProfilerOverlay overlay;
+    boolean profiling, threeFingers;
+    // Time of the last profile saved, the steps copied by the physics thread are saved under the same time
+    long stepProfileTime;
+    // Input of the games, one is recorded while the last game is written on the writer thread
+    InputRecording recording = new InputRecording(), spareRecording = new InputRecording();
+    final AsyncExecutor recordingWriter = new AsyncExecutor(1);
+    AsyncResult<Void> recordingWrite;
 
-    // Magic numbers for physics simulation
     static final float SCALE = 0.03f;
-    static final float STEP_TIME = 1f / 60f;
-    static final int VELOCITY_ITERATIONS = 6;
-    static final int POSITION_ITERATIONS = 2;
-    float accumulator = 0;
-
-    static final float MAX_JUMP = 30.0f;
-    static final float MAX_VELX = 1.5f;
-    static final float GRAV = 150.0f;
-    static final float BOUNCE_VEL = (float)(Math.sqrt(2*GRAV*MAX_JUMP));
-    static final float SPEED_CLOUD = 0.08f;
-
-    /**
-     * Simple structure to represent a platform
-     */
-    private class Platform {
-        Vector2 pos;
-        // 0 NORMAL, 1 CARROT, 2 SPRING, 3 JETPACK
-        int mode;
-        Body carrot;
-        Body spring;
-        Body jetpack;
-
-        Platform(Vector2 v, int m) {
-            pos = v;
-            mode = m;
-        }
-    }
-
-    /**
-     * Internal class to handle the level generation
-     */
-    private class Level {
-        List<Platform> platforms = new ArrayList<Platform>();
-        List<Vector2> clouds = new ArrayList<Vector2>();
-        List<Body> enemies = new ArrayList<Body>();
-        float threshold = MAX_JUMP/4;
-        float lowerBound = 0;
-        float platformWidth, platformHeight;
-        float carrotWidth, carrotHeight;
-        float springWidth, springHeight;
-        float jetpackWidth, jetpackHeight;
-        float enemyWidth, cloudWidth;
-
-        /**
-         * Constructor for the level generator
-         */
-        Level() {
-            platformWidth = sprites.get("ground_grass").getWidth();
-            platformHeight = sprites.get("ground_grass").getHeight();
-            carrotWidth = sprites.get("carrot").getWidth();
-            carrotHeight = sprites.get("carrot").getHeight();
-            springWidth = sprites.get("spring").getWidth();
-            springHeight = sprites.get("spring").getHeight();
-            jetpackWidth = sprites.get("jetpack").getHeight();
-            jetpackHeight = sprites.get("jetpack").getHeight();
-            cloudWidth = sprites.get("cloud").getWidth();
-            enemyWidth = sprites.get("flyMan_jump").getWidth();
-        }
-
-        int randomInt(int Min, int Max) {
-            return Min + (int) (Math.random() * ((Max - Min) + 1));
-        }
-        int randomInt(float Min, float Max) {
-            return this.randomInt((int) Min, (int) Max);
-        }
-
-        /**
-         * This method is called whenever new platforms need to be generated
-         * Twice the height of the device screen is generated above the player
-         */
-        void generate() {
-            for(float yPos = threshold + 2*platformHeight; yPos < threshold + 2*camera.viewportHeight;) {
-                int xPos = randomInt(0, (int)(camera.viewportWidth - platformWidth));
-                int mode;
-                if (randomInt(0,10)%4 != 0) {
-                    mode = 0;
-                } else {
-                    int rnd = randomInt(0,10)%3;
-                    mode = rnd + 1;
-                    if (mode == 3) {
-                        if (randomInt(0,10)%2 == 0)
-                            mode = 0;
-                    }
-                }
-                Platform p = new Platform(new Vector2(xPos, yPos), mode);
-                platforms.add(p);
-
-                // Generate associated physics object
-                createBody("ground_grass.png", xPos, yPos, 0, BodyDef.BodyType.StaticBody);
-                if (p.mode == 1) {
-                    float x = p.pos.x + level.platformWidth/2 - level.carrotWidth/1.5f;
-                    float y = p.pos.y + level.platformHeight + level.carrotHeight/4;
-                    p.carrot = createBody("carrot.png", x, y, 0, BodyDef.BodyType.StaticBody);
-                } else if (p.mode == 2) {
-                    float x = p.pos.x + level.platformWidth/2 - level.springWidth/1.5f;
-                    float y = p.pos.y + level.platformHeight + level.springHeight/4;
-                    p.spring = createBody("spring.png", x, y, 0, BodyDef.BodyType.StaticBody);
-                } else if (p.mode == 3) {
-                    float x = p.pos.x + level.platformWidth/2 - level.jetpackWidth/1.5f;
-                    float y = p.pos.y + level.platformHeight + level.jetpackHeight/4;
-                    p.jetpack = createBody("jetpack.png", x, y, 0, BodyDef.BodyType.StaticBody);
-                }
-
-                yPos += randomInt(3*platformHeight, MAX_JUMP/3);
-            }
-            lowerBound = camera.position.y - camera.viewportHeight/2;
-            threshold += 2*camera.viewportHeight;
-            for (Iterator<Platform> iterator = platforms.iterator(); iterator.hasNext(); ) {
-                Vector2 platform = iterator.next().pos;
-                if (platform.y < lowerBound)
-                    iterator.remove();
-            }
-            if (randomInt(0,10)%2 < 3) {
-                float xPos = randomInt(0, camera.viewportWidth/2 + cloudWidth);
-                float yPos = threshold + camera.viewportHeight;
-                clouds.add(new Vector2(xPos, yPos));
-            }
-            if (randomInt(0,10)%2 < 3) {
-                float xPos = randomInt(0, camera.viewportWidth/2 + cloudWidth);
-                float yPos = threshold + camera.viewportHeight/2;
-                Body e = createBody("flyMan_jump.png", xPos, yPos, 0, BodyDef.BodyType.StaticBody);
-                enemies.add(e);
-            }
-        }
-    }
-
-    /**
-     * Physics-related class to handle object collisions
-     * There are special cases to handle: bunny with spring, bunny with jetpack, etc
-     */
-    private class CustomListener implements ContactListener {
-
-        private boolean handlePlatform(Fixture bunny, Fixture platform) {
-            return bunny.getBody().getLinearVelocity().y < 0;
-        }
-
-        @Override
-        public void preSolve(Contact contact, Manifold oldManifold) {
-            Fixture fixtureA = contact.getFixtureA();
-            Fixture fixtureB = contact.getFixtureB();
-            if (fixtureA.getBody().getUserData() == null || fixtureB.getBody().getUserData() == null)
-                return;
-            String sA = fixtureA.getBody().getUserData().toString();
-            String sB = fixtureB.getBody().getUserData().toString();
-            if (sA.equals("bunny1_walk1.png")) {
-                if (sB.equals("ground_grass.png")) {
-                    contact.setEnabled(handlePlatform(fixtureA, fixtureB));
-                } else if (sB.equals("carrot.png")) {
-                    contact.setEnabled(false);
-                    fixtureB.getBody().setUserData("remove");
-                } else if (sB.equals("spring.png")) {
-                    boolean isEnabled = handlePlatform(fixtureA, fixtureB);
-                    contact.setEnabled(isEnabled);
-                    if (isEnabled) {
-                        if (fixtureB.getBody().getUserData() != "remove") {
-                            fixtureA.getBody().applyLinearImpulse(0.0f, 1000.0f, 0.0f, 0.0f, true);
-                            fixtureB.getBody().setUserData("remove");
-                        }
-                    }
-                } else if (sB.equals("jetpack.png")) {
-                    contact.setEnabled(false);
-                    fixtureA.getBody().setGravityScale(0.1f);
-                    fixtureA.getBody().applyLinearImpulse(0.0f, 1000.0f, 0.0f, 0.0f, true);
-                    counterJetpack = 100;
-                    fireParticle.getEmitters().get(0).getTransparency().setHigh(1.0f);
-                    fireParticle.reset();
-                    fixtureB.getBody().setUserData("remove");
-                } else if (sB.equals("flyMan_jump.png")) {
-                    game.switchToLost(score + scoreCarrots);
-                }
-            }
-            else if (sB.equals("bunny1_walk1.png")) {
-                if (sA.equals("ground_grass.png")) {
-                    contact.setEnabled(handlePlatform(fixtureB, fixtureA));
-                } else if (sA.equals("carrot.png")) {
-                    contact.setEnabled(false);
-                    fixtureA.getBody().setUserData("remove");
-                }  else if (sA.equals("spring.png")) {
-                    boolean isEnabled = handlePlatform(fixtureB, fixtureA);
-                    contact.setEnabled(isEnabled);
-                    if (isEnabled) {
-                        if (fixtureA.getBody().getUserData() != "remove") {
-                            fixtureB.getBody().applyLinearImpulse(0.0f, 1000.0f, 0.0f, 0.0f, true);
-                            fixtureA.getBody().setUserData("remove");
-                        }
-                    }
-                } else if (sA.equals("jetpack.png")) {
-                    contact.setEnabled(false);
-                    fixtureB.getBody().setGravityScale(0.1f);
-                    fixtureB.getBody().applyLinearImpulse(0.0f, 1000.0f, 0.0f, 0.0f, true);
-                    counterJetpack = 100;
-                    fireParticle.getEmitters().get(0).getTransparency().setHigh(1.0f);
-                    fireParticle.reset();
-                    fixtureA.getBody().setUserData("remove");
-                } else if (sA.equals("flyMan_jump.png")) {
-                    game.switchToLost(score + scoreCarrots);
-                }
-            }
-        }
-
-        @Override
-        public void postSolve(Contact contact, ContactImpulse impulse) {
-            if (!contact.isEnabled())
-                return;
-            Fixture fixtureA = contact.getFixtureA();
-            Fixture fixtureB = contact.getFixtureB();
-            Object uA = fixtureA.getBody().getUserData();
-            Object uB = fixtureB.getBody().getUserData();
-            if (uA != null && uB != null && uA.toString().equals("bunny1_walk1.png")) {
-                if (uB.toString().startsWith("ground")) {
-                    Vector2 vBunny = fixtureA.getBody().getLinearVelocity();
-                    vBunny.y = BOUNCE_VEL;
-                    fixtureA.getBody().setLinearVelocity(vBunny);
-                }
-            }
-            else if (uB != null && uA != null && uB.toString().equals("bunny1_walk1.png")) {
-                if (uA.toString().startsWith("ground")) {
-                    Vector2 vBunny = fixtureB.getBody().getLinearVelocity();
-                    vBunny.y = BOUNCE_VEL;
-                    fixtureB.getBody().setLinearVelocity(vBunny);
-                }
-            }
-        }
 
-        @Override
-        public void beginContact(Contact contact) {
-
-        }
-
-        @Override
-        public void endContact(Contact contact) {
-
-        }
-    }
+    // Regions of the atlas of the game, the desktop AtlasPacker packs these ones only
+    public static final String[] REGIONS = {"bunny1_walk1", "ground_grass", "carrot", "spring", "spring_out", "jetpack", "cloud", "flyMan_jump"};
+    // Extra height drawn above and below the camera window
+    static final float CULL_MARGIN = 2.0f;
 
     /**
      * Main constructor for the GameScreen class
      * @param g An instance of the main CarrotGame class
+     * @param s The seed of the level, the same seed always produces the same level
      */
-    public GameScreen(CarrotGame g) {
+    public GameScreen(CarrotGame g, long s) {
         game = g;
-        score = 0;
-    }
-
-    /**
-     * This function intelligently steps our physics world using a small dt
-     */
-    private void stepWorld() {
-        float delta = Gdx.graphics.getDeltaTime();
-        accumulator += Math.min(delta, 0.25f);
-        if (accumulator >= STEP_TIME) {
-            accumulator -= STEP_TIME;
-            world.step(STEP_TIME, VELOCITY_ITERATIONS, POSITION_ITERATIONS);
-        }
+        seed = s;
     }
 
     /**
-     * Creates an invisible ground for the beginning of the game
-     */
-    private void createGround() {
-        if (ground != null)
-            world.destroyBody(ground);
-
-        BodyDef bodyDef = new BodyDef();
-        bodyDef.type = BodyDef.BodyType.StaticBody;
-        FixtureDef fixtureDef = new FixtureDef();
-        fixtureDef.friction = 1;
-        PolygonShape shape = new PolygonShape();
-        shape.setAsBox(camera.viewportWidth*3, 1);
-        fixtureDef.shape = shape;
-        ground = world.createBody(bodyDef);
-        ground.setUserData("ground");
-        ground.createFixture(fixtureDef);
-        ground.setTransform(-camera.viewportWidth, 0, 0);
-
-        shape.dispose();
-    }
-
-    /**
-     * Grabs the assets needed for the game and creates an array of sprites
-     * This is done once only (when the game loads)
+     * Creates the sprites of the game out of the loaded atlas
      */
     private void generateSprites() {
         Array<TextureAtlas.AtlasRegion> regions = textureAtlas.getRegions();
         for (TextureAtlas.AtlasRegion region : regions) {
             Sprite sprite = textureAtlas.createSprite(region.name);
-            float realScale = SCALE;
-            if (region.name.equals("carrot"))
-                realScale *= 2.0f;
-            else if (region.name.equals("cloud"))
-                realScale *= 4.0f;
-            else if (region.name.equals("flyMan_jump"))
-                realScale *= 1.80f;
+            float realScale = GameWorld.spriteScale(region.name);
             float width = sprite.getWidth() * realScale;
             float height = sprite.getHeight() * realScale;
             sprite.setSize(width, height);
             sprite.setOrigin(0, 0);
             sprites.put(region.name, sprite);
         }
+        resolveSprites();
+    }
+
+    /**
+     * Picks the sprites drawn every frame out of the map and sets up the cloud layer
+     */
+    void resolveSprites() {
+        bunnySprite = sprites.get("bunny1_walk1");
+        platformSprite = sprites.get("ground_grass");
+        carrotSprite = sprites.get("carrot");
+        springSprite = sprites.get("spring");
+        springOutSprite = sprites.get("spring_out");
+        jetpackSprite = sprites.get("jetpack");
+        cloudSprite = sprites.get("cloud");
+        enemySprite = sprites.get("flyMan_jump");
+        clouds = new CloudLayer(cloudSprite.getWidth(), cloudSprite.getHeight(), seed);
+    }
+
+    /**
+     * Loads a particle effect and scales it to the world
+     * @param effect The effect to load into
+     * @param name The name of the effect file
+     * @return The loaded effect
+     */
+    static ParticleEffect loadParticle(ParticleEffect effect, String name) {
+        effect.load(Gdx.files.internal(name), Gdx.files.internal(""));
+        return prepareParticle(effect);
+    }
+
+    /**
+     * Starts a particle effect and scales it to the world
+     * @param effect The effect, which must not be shared since it is scaled in place
+     * @return The same effect
+     */
+    static ParticleEffect prepareParticle(ParticleEffect effect) {
+        effect.start();
+        effect.scaleEffect(0.1f);
+        return effect;
     }
 
     /**
      * Draws a loaded sprite on the screen
-     * @param name The name of the sprite to be drawn
+     * @param sprite The sprite to be drawn
      * @param x X coordinate on the screen
      * @param y Y coordinate on the screen
      * @param degrees The rotation angle (in degrees)
      */
-    private void drawSprite(String name, float x, float y, float degrees) {
-        Sprite sprite = sprites.get(name);
-        float alpha = (name.equals("cloud") ? 0.25f : 1.0f);
-        sprite.setColor(sprite.getColor().r, sprite.getColor().g, sprite.getColor().b, alpha);
+    void drawSprite(Sprite sprite, float x, float y, float degrees) {
         sprite.setPosition(x, y);
         sprite.setRotation(degrees);
-        sprite.setOrigin(0f, 0f);
         sprite.draw(batch);
     }
 
     /**
-     * Creates a Body instance for our physics engine, Box2D
-     * @param name The name of this new body
-     * @param x X coordinate in the 2D world
-     * @param y Y coordinate in the 2D world
-     * @param rotation Rotation angle (in degrees)
-     * @param bt Body type
-     * @return A Body instance ready to be manipulated
+     * Starts a new game on a given level, keeping the simulation, the sprites and the particle effects
+     * @param s The seed of the new level
      */
-    private Body createBody(String name, float x, float y, float rotation, BodyDef.BodyType bt) {
-        BodyDef bodyDef = new BodyDef();
-        bodyDef.type = bt;
-        bodyDef.fixedRotation = true;
-        FixtureDef fd = new FixtureDef();
-        fd.density = 2.0f;
-        fd.friction = 0.0f;
-        fd.restitution = 1.0f;
-        Body body = world.createBody(bodyDef);
-        body.setUserData(name);
-        float scale = sprites.get(name.split("\\.")[0]).getWidth();
-        physicsLoader.attachFixture(body, name, fd, scale);
-        body.setTransform(x, y, rotation);
-        return body;
+    void reset(long s) {
+        seed = s;
+        if (gameWorld == null)
+            return;
+        clearGame();
+        // The world resizes itself as it resets, to the window rather than to the size of a replayed game
+        worldWidth = viewport.getWorldWidth();
+        worldHeight = viewport.getWorldHeight();
+        gameWorld.camera.viewportWidth = worldWidth;
+        gameWorld.camera.viewportHeight = worldHeight;
+        gameWorld.reset(seed);
+        gameWorld.recording = recording;
+    }
+
+    /**
+     * Stops the physics thread and forgets what the screen kept of the last game, the simulation is left as it is
+     * The clouds are placed for the new game by the next resize(), which showing the screen calls
+     */
+    private void clearGame() {
+        if (physicsThread != null)
+            physicsThread.stop();
+        lostReported = false;
+        snapshot = null;
+        platformCaches.reset();
+        clouds.reset(seed);
+        carrotEffects.clear();
+        fireEffects.clear();
+        fire = null;
     }
 
     @Override
     public void show() {
-        // Prepare viewport
-        camera = new OrthographicCamera();
-        viewport = new ExtendViewport(65, 65, camera);
+        if (gameWorld == null)
+            create();
+        // The font is shared with the other screens
+        font = game.font;
+        font.getData().setScale(0.10f);
+        font.setColor(Color.WHITE);
+        warmUpScore();
+    }
 
-        // Prepare physics engine
-        Box2D.init();
-        debugRenderer = new Box2DDebugRenderer();
-        world = new World(new Vector2(0, -GRAV), true);
-        physicsLoader = new BodyEditorLoader(Gdx.files.internal("physics.json"));
-        collisionFilter = new CustomListener();
-        world.setContactListener(collisionFilter);
+    /**
+     * Lays out and caches the longest score once, so the arrays behind the text do not grow when the score
+     * gets another digit during a game
+     */
+    void warmUpScore() {
+        layout.setText(font, "0000000000");
+        font.getCache().setText(layout, 0, 0);
+        font.getCache().clear();
+        shownScore = -1;
+    }
 
-        // Prepare sprites and drawing tools
+    /**
+     * Plays a recorded game again in place of the current one, the game it plays is not recorded
+     * @param r The recorded game
+     */
+    void replay(InputRecording r) {
+        seed = r.seed;
+        if (gameWorld == null)
+            create();
+        clearGame();
+        // The world is not stepping, clearGame() stopped its thread, and it is only reset by startReplay()
+        gameWorld.startReplay(r);
+        gameWorld.recording = null;
+    }
+
+    /**
+     * Writes the game that just ended on the writer thread and records the next one into the spare recording
+     */
+    void saveRecording() {
+        final InputRecording finished = recording;
+        final FileHandle file = Gdx.files.local(InputRecording.FILE);
+        // The spare recording is only reused once it has been written, which happens long before a game ends
+        if (recordingWrite != null)
+            recordingWrite.get();
+        recordingWrite = recordingWriter.submit(new AsyncTask<Void>() {
+            @Override
+            public Void call() {
+                try {
+                    finished.write(file);
+                } catch (IOException e) {
+                    Gdx.app.error("GameScreen", "Cannot save the recording of the game", e);
+                }
+                return null;
+            }
+        });
+        recording = spareRecording;
+        spareRecording = finished;
+        recording.clear();
+        gameWorld.recording = recording;
+    }
+
+    /**
+     * Prepares everything the screen needs, once only (the first time it is shown)
+     */
+    private void create() {
+        // Prepare sprites and drawing tools, everything comes already loaded from the AssetManager
+        AssetManager assets = game.assets;
         batch = new SpriteBatch();
-        textureAtlas = new TextureAtlas("pack.atlas");
+        textureAtlas = assets.get(Assets.ATLAS, TextureAtlas.class);
         generateSprites();
         layout = new GlyphLayout();
 
-        FreeTypeFontGenerator generator = new FreeTypeFontGenerator(Gdx.files.internal("pamela.ttf"));
-        FreeTypeFontGenerator.FreeTypeFontParameter parameter = new FreeTypeFontGenerator.FreeTypeFontParameter();
-        parameter.size = 80;
-        font = generator.generateFont(parameter);
-        font.getRegion().getTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
-        font.getData().setScale(0.10f);
-        generator.dispose();
-
-        // Generate the beginning of the level
-        level = new Level();
-
-        // Prepare particle FX
-        carrotParticle = new ParticleEffect();
-        carrotParticle.load(Gdx.files.internal("carrot_eaten.party"), Gdx.files.internal(""));
-        carrotParticle.start();
-        carrotParticle.scaleEffect(0.1f);
+        // Prepare the simulation and the viewport following it
+        gameWorld = new GameWorld(game, spriteSizes(), assets.get(Assets.PHYSICS, BodyEditorLoader.class), seed);
+        gameWorld.recording = recording;
+        gameWorld.profiler = profiler;
+        if (game.threadedPhysics)
+            physicsThread = new PhysicsThread(gameWorld);
+        viewport = new ExtendViewport(65, 65, camera);
+        platformCaches = new PlatformCaches(platformSprite, platformSprite.getWidth(), platformSprite.getHeight());
 
-        fireParticle = new ParticleEffect();
-        fireParticle.load(Gdx.files.internal("fire.party"), Gdx.files.internal(""));
-        fireParticle.start();
-        fireParticle.scaleEffect(0.1f);
+        // Prepare particle FX, copies share the images of the loaded effects
+        carrotEffects = new ParticleEffects(prepareParticle(
+                new ParticleEffect(assets.get(Assets.CARROT_PARTICLE, ParticleEffect.class))), CARROT_EFFECTS);
+        fireEffects = new ParticleEffects(prepareParticle(
+                new ParticleEffect(assets.get(Assets.FIRE_PARTICLE, ParticleEffect.class))), FIRE_EFFECTS);
+    }
 
-        bunny = createBody("bunny1_walk1.png", 10, 10, 0, BodyDef.BodyType.DynamicBody);
+    /**
+     * Gives the size of each sprite, which is also the size of its body in the simulation
+     */
+    HashMap<String, Vector2> spriteSizes() {
+        HashMap<String, Vector2> sizes = new HashMap<String, Vector2>();
+        for (Map.Entry<String, Sprite> entry : sprites.entrySet())
+            sizes.put(entry.getKey(), new Vector2(entry.getValue().getWidth(), entry.getValue().getHeight()));
+        return sizes;
     }
 
     @Override
     public void resize(int width, int height) {
         viewport.update(width, height, true);
+        // A replayed game keeps the world size it was recorded with, a game reset at this size already has it
+        boolean resized = viewport.getWorldWidth() != worldWidth || viewport.getWorldHeight() != worldHeight;
+        if (gameWorld.replay == null && resized) {
+            worldWidth = viewport.getWorldWidth();
+            worldHeight = viewport.getWorldHeight();
+            if (physicsThread != null)
+                physicsThread.resize(worldWidth, worldHeight);
+            else
+                gameWorld.resize(worldWidth, worldHeight);
+        }
+        // Clouds are scattered around the view last drawn, the camera follows the bunny back there at the next step
+        float cameraBottom = snapshot != null ? snapshot.cameraY - viewport.getWorldHeight()/2 : 0;
+        clouds.resize(viewport.getWorldWidth(), viewport.getWorldHeight(), cameraBottom);
         batch.setProjectionMatrix(camera.combined);
-        createGround();
     }
 
     @Override
     public void render(float delta) {
-        timeElapsed += 0.01f;
-        Vector2 vBunny = bunny.getLinearVelocity();
-
-        boolean available = Gdx.input.isPeripheralAvailable(Input.Peripheral.Accelerometer);
-        if (!available) {
-            if (Gdx.input.isKeyPressed(Input.Keys.LEFT)){
-                vBunny.x = -60.0f;
-            } else if (Gdx.input.isKeyPressed(Input.Keys.RIGHT)){
-                vBunny.x = 60.0f;
+        handleProfilerInput();
+        profiler.beginFrame();
+        int renderCalls = 0;
+        if (profiling) {
+            GLProfiler.reset();
+            if (batch instanceof SpriteBatch)
+                renderCalls = ((SpriteBatch) batch).totalRenderCalls;
+        }
+
+        if (physicsThread != null) {
+            if (!physicsThread.isRunning())
+                physicsThread.start();
+            physicsThread.sendInput();
+        } else {
+            gameWorld.update(delta);
+        }
+
+        Gdx.gl.glClearColor(0.57f, 0.77f, 0.85f, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+        draw(delta);
+
+        if (profiling) {
+            if (batch instanceof SpriteBatch)
+                renderCalls = ((SpriteBatch) batch).totalRenderCalls - renderCalls;
+            profiler.endFrame(renderCalls, GLProfiler.drawCalls, GLProfiler.textureBindings, snapshot.bodies, snapshot.contacts);
+            // Box2D cannot be read while it steps on another thread, its outlines are only drawn from the render thread
+            overlay.draw(profiler, physicsThread == null ? gameWorld.world : null, camera.combined, batch, font,
+                    Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        }
+
+        // On the render thread the world ends the game itself, during its update
+        if (physicsThread != null && snapshot.lost && !lostReported) {
+            lostReported = true;
+            game.switchToLost(snapshot.score);
+        }
+    }
+
+    /**
+     * Starts or stops profiling on F3 or when a third finger touches the screen, F4 saves the frames recorded so far
+     * The frames are saved when profiling stops
+     */
+    void handleProfilerInput() {
+        boolean touched = Gdx.input.isTouched(2);
+        boolean toggle = Gdx.input.isKeyJustPressed(Input.Keys.F3) || (touched && !threeFingers);
+        threeFingers = touched;
+        if (toggle) {
+            profiling = !profiling;
+            if (profiling) {
+                if (overlay == null)
+                    overlay = new ProfilerOverlay();
+                GLProfiler.enable();
             } else {
-                vBunny.x = 0.0f;
+                GLProfiler.disable();
+                dumpProfile();
             }
-        } else {
-            Matrix4 matrix = new Matrix4();
-            Gdx.input.getRotationMatrix(matrix.val);
-            float pitch = matrix.getValues()[9];
-            Vector2 pBunny = bunny.getPosition();
-            pBunny.x += Math.max(Math.min(5.0f * pitch, MAX_VELX), -MAX_VELX);
-            bunny.setTransform(pBunny, bunny.getAngle());
+            profiler.setEnabled(profiling);
+            if (physicsThread != null)
+                physicsThread.setProfiling(profiling);
+        } else if (profiling && Gdx.input.isKeyJustPressed(Input.Keys.F4)) {
+            dumpProfile();
+        }
+        saveStepProfile();
+    }
+
+    /**
+     * Saves the recorded frames into a new CSV file next to the game, and the steps into another one
+     * when the simulation runs on its own thread, as soon as that thread copied them
+     */
+    void dumpProfile() {
+        long time = TimeUtils.millis();
+        dumpProfile(profiler, Gdx.files.local("profile-" + time + ".csv"));
+        if (physicsThread != null) {
+            stepProfileTime = time;
+            physicsThread.copyProfile();
+            saveStepProfile();
         }
+    }
 
-        bunny.setLinearVelocity(vBunny);
+    /**
+     * Saves the steps copied by the physics thread, if it made the copy asked for by dumpProfile()
+     */
+    private void saveStepProfile() {
+        if (physicsThread == null)
+            return;
+        FrameProfiler steps = physicsThread.takeProfile();
+        if (steps != null)
+            dumpProfile(steps, Gdx.files.local("profile-" + stepProfileTime + "-physics.csv"));
+    }
 
-        Vector2 pBunny = bunny.getPosition();
-        float halfBunny = sprites.get("bunny1_walk1").getWidth()/2;
-        if (pBunny.x > camera.viewportWidth - halfBunny) {
-            pBunny.x = - halfBunny;
-            bunny.setTransform(pBunny, bunny.getAngle());
-        } else if (pBunny.x < - halfBunny) {
-            pBunny.x = camera.viewportWidth - halfBunny;
-            bunny.setTransform(pBunny, bunny.getAngle());
+    private void dumpProfile(FrameProfiler frames, FileHandle file) {
+        try {
+            frames.dump(file);
+            Gdx.app.log("GameScreen", "Saved " + frames.size() + " frames to " + file.file().getAbsolutePath());
+        } catch (IOException e) {
+            Gdx.app.error("GameScreen", "Cannot save the profile", e);
         }
+    }
 
-        stepWorld();
-        Gdx.gl.glClearColor(0.57f, 0.77f, 0.85f, 1);
-        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+    /**
+     * Draws the last snapshot of the simulation into the batch
+     * Nothing is allocated here once the game is running, to keep the garbage collector quiet
+     * @param delta Time elapsed since the last frame (in seconds)
+     */
+    void draw(float delta) {
+        long t = profiler.start();
+        WorldSnapshot s = gameWorld.snapshots.front();
+        snapshot = s;
+        // Moving things are drawn between their positions before and after the last step
+        float alpha = physicsThread != null ? PhysicsThread.alpha(s) : s.alpha;
+        GameWorld.Level level = gameWorld.level;
+        camera.position.set(s.cameraX, s.cameraY(alpha), 0);
+        camera.update();
+        batch.setProjectionMatrix(camera.combined);
 
         batch.begin();
 
-        if (!carrotParticle.isComplete()) {
-            carrotParticle.update(Gdx.graphics.getDeltaTime());
-            carrotParticle.draw(batch);
+        // Only what intersects the camera window is drawn
+        float bottom = camera.position.y - camera.viewportHeight/2 - CULL_MARGIN;
+        float top = camera.position.y + camera.viewportHeight/2 + CULL_MARGIN;
+
+        // Background first
+        float cameraBottom = camera.position.y - camera.viewportHeight/2;
+        clouds.update(delta, cameraBottom);
+        clouds.draw(batch, cloudSprite, camera.position.x - camera.viewportWidth/2, cameraBottom);
+
+        // Static platforms, one call per chunk
+        PlatformBuffer platforms = s.platforms;
+        if (platformCaches != null) {
+            batch.end();
+            platformCaches.update(platforms);
+            platformCaches.draw(camera.combined, bottom, top);
+            batch.begin();
         }
 
-        for (Platform p : level.platforms) {
-            drawSprite("ground_grass", p.pos.x, p.pos.y, 0);
-            if (p.mode == 1) {
-                Vector2 cPos = p.carrot.getPosition();
-                if (p.carrot.getUserData() == "remove") {
-                    p.mode = 0;
-                    p.carrot.setActive(false);
-                    p.carrot = null;
-                    scoreCarrots += 50;
-                    carrotParticle.getEmitters().first().setPosition(cPos.x + level.carrotWidth/2, cPos.y);
-                    if (carrotParticle.isComplete())
-                        carrotParticle.reset();
-                }
-                drawSprite("carrot", cPos.x, cPos.y, 0);
-            } else if (p.mode == 2) {
-                Vector2 cPos = p.spring.getPosition();
-                if (p.spring.getUserData() == "remove") {
-                    drawSprite("spring_out", cPos.x, cPos.y, 0);
+        t = profiler.lap(FrameProfiler.DRAW, t);
+        // Every carrot eaten since the last frame gets its own effect
+        for (int n = Math.max(seenCarrots, s.carrotsEaten - GameWorld.EATEN_HISTORY); n < s.carrotsEaten; n++) {
+            int eaten = n & (GameWorld.EATEN_HISTORY - 1);
+            carrotEffects.spawn(s.eatenX[eaten], s.eatenY[eaten]);
+        }
+        seenCarrots = s.carrotsEaten;
+        carrotEffects.draw(batch, delta);
+        t = profiler.lap(FrameProfiler.PARTICLES, t);
+
+        for (int i = platforms.firstFrom(bottom - level.platformReach); i < s.materialisedPlatforms; i++) {
+            int slot = platforms.slot(i);
+            float y = platforms.y[slot];
+            if (y > top)
+                break;
+            if (platformCaches == null)
+                drawSprite(platformSprite, platforms.x[slot], y, 0);
+            int mode = platforms.mode[slot];
+            if (mode == PlatformBuffer.NORMAL)
+                continue;
+            float itemX = s.itemX[slot];
+            float itemY = s.itemY[slot];
+            if (mode == PlatformBuffer.CARROT) {
+                drawSprite(carrotSprite, itemX, itemY, 0);
+            } else if (mode == PlatformBuffer.SPRING) {
+                if (s.itemUsed[slot]) {
+                    drawSprite(springOutSprite, itemX, itemY, 0);
                 } else {
-                    drawSprite("spring", cPos.x, cPos.y, 0);
+                    drawSprite(springSprite, itemX, itemY, 0);
                 }
-            } else if (p.mode == 3) {
-                Vector2 cPos = p.jetpack.getPosition();
-                if (p.jetpack.getUserData() == "remove") {
-                    p.mode = 0;
-                    p.jetpack.setActive(false);
-                    p.jetpack = null;
-                }
-                drawSprite("jetpack", cPos.x, cPos.y, 0);
+            } else if (mode == PlatformBuffer.JETPACK) {
+                drawSprite(jetpackSprite, itemX, itemY, 0);
             }
         }
 
-        for (Vector2 c : level.clouds) {
-            drawSprite("cloud", c.x, c.y, 0);
-            c.x -= SPEED_CLOUD;
+        for (int i = s.firstEnemyFrom(bottom - level.enemyHeight); i < s.enemyY.size; i++) {
+            if (s.enemyY.get(i) > top)
+                break;
+            drawSprite(enemySprite, s.enemyX(i, alpha), s.enemyY(i, alpha), 0);
         }
 
-        for (Body e : level.enemies) {
-            drawSprite("flyMan_jump", e.getPosition().x, e.getPosition().y, 0);
-            float deltaX = (float)(Math.sin(timeElapsed) * (viewport.getWorldWidth()/2 - level.enemyWidth));
-            float deltaY = (float)Math.sin(timeElapsed*8) * 0.15f;
-            e.setTransform(camera.position.x - level.enemyWidth/2 + deltaX , e.getPosition().y + deltaY, 0);
+        float bunnyX = s.bunnyX(alpha);
+        float bunnyY = s.bunnyY(alpha);
+        float degrees = (float) Math.toDegrees(s.bunnyAngle);
+        // A new jetpack lights its own fire, the previous one burns out behind the bunny
+        if (s.jetpacksPicked != seenJetpacks) {
+            seenJetpacks = s.jetpacksPicked;
+            if (fireEffects.isLive(fire))
+                fire.allowCompletion();
+            fire = fireEffects.spawn(bunnyX - 1, bunnyY + level.jetpackHeight);
         }
-
-        Vector2 position = bunny.getPosition();
-        float degrees = (float) Math.toDegrees(bunny.getAngle());
-        if (counterJetpack > 0) {
-            counterJetpack--;
-            if (counterJetpack == 0)
-                bunny.setGravityScale(1.0f);
-            if (counterJetpack < 100) {
-                float alpha = 1.0f - (100 - counterJetpack) * 0.01f;
-                fireParticle.getEmitters().get(0).getTransparency().setHigh(alpha);
+        if (s.counterJetpack > 0) {
+            drawSprite(jetpackSprite, bunnyX - 1, bunnyY, degrees);
+            if (fireEffects.isLive(fire)) {
+                if (s.counterJetpack < 100)
+                    fireEffects.fade(fire, 1.0f - (100 - s.counterJetpack) * 0.01f);
+                fire.setPosition(bunnyX - 1, bunnyY + level.jetpackHeight);
             }
-            drawSprite("jetpack", position.x - 1, position.y, degrees);
-            fireParticle.setPosition(position.x - 1, position.y + level.jetpackHeight);
-            fireParticle.update(Gdx.graphics.getDeltaTime());
-            fireParticle.draw(batch);
+        } else if (fire != null) {
+            if (fireEffects.isLive(fire))
+                fire.allowCompletion();
+            fire = null;
         }
-
-        drawSprite("bunny1_walk1", position.x, position.y, degrees);
-
-        if ((camera.position.y - camera.viewportHeight/2) > score) {
-            score = (int)(camera.position.y - camera.viewportHeight/2);
+        t = profiler.lap(FrameProfiler.DRAW, t);
+        fireEffects.draw(batch, delta);
+        t = profiler.lap(FrameProfiler.PARTICLES, t);
+
+        drawSprite(bunnySprite, bunnyX, bunnyY, degrees);
+
+        int score = s.score;
+        if (score != shownScore) {
+            shownScore = score;
+            scoreText.setLength(0);
+            scoreText.append(score);
+            layout.setText(font, scoreText);
         }
-        layout.setText(font, "" + (score + scoreCarrots));
         float textY = camera.position.y + camera.viewportHeight/2 - layout.height*0.5f;
         float textX = camera.position.x + camera.viewportWidth/2 - layout.width*1.2f;
-        font.draw(batch, "" + (score + scoreCarrots), textX, textY);
+        font.draw(batch, layout, textX, textY);
 
         batch.end();
-        if (level.threshold - camera.position.y < camera.viewportHeight) {
-            level.generate();
-        }
-
-        if (bunny.getPosition().y > camera.position.y) {
-            camera.position.y = bunny.getPosition().y;
-            camera.update();
-            batch.setProjectionMatrix(camera.combined);
-        }
-
-        if (bunny.getPosition().y < camera.position.y - camera.viewportHeight/2) {
-            game.switchToLost(score + scoreCarrots);
-        }
+        profiler.lap(FrameProfiler.DRAW, t);
     }
 
     @Override
     public void dispose() {
-        textureAtlas.dispose();
+        if (gameWorld == null)
+            return;
+        if (physicsThread != null)
+            physicsThread.stop();
+        // The atlas belongs to the AssetManager
+        platformCaches.dispose();
         sprites.clear();
-        world.dispose();
-        debugRenderer.dispose();
+        gameWorld.dispose();
+        if (overlay != null)
+            overlay.dispose();
+        recordingWriter.dispose();
+        batch.dispose();
     }
 
     @Override
     public void hide() {
-
+        if (physicsThread != null)
+            physicsThread.stop();
+        if (gameWorld.recording != null && gameWorld.recording.finished)
+            saveRecording();
+        // The other screens are not profiled
+        if (profiling) {
+            profiling = false;
+            profiler.setEnabled(false);
+            if (physicsThread != null)
+                physicsThread.setProfiling(false);
+            GLProfiler.disable();
+            dumpProfile();
+        }
     }
 
     @Override
@@ -612,6 +578,9 @@ public class GameScreen implements Screen {
 
     @Override
     public void pause() {
+        // The thread starts again with the next frame
+        if (physicsThread != null)
+            physicsThread.stop();
 
     }
 }
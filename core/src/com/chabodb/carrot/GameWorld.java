@@ -0,0 +1,975 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.Contact;
+import com.badlogic.gdx.physics.box2d.ContactImpulse;
+import com.badlogic.gdx.physics.box2d.ContactListener;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.Manifold;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import com.badlogic.gdx.utils.async.AsyncTask;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Simulation side of the gameplay: physics world, level stream, collisions, score and camera follow
+ * It never touches OpenGL, so it can be driven by the GameScreen or by the headless backend
+ * @author Benoit Chabod
+ */
+public class GameWorld {
+    final HashMap<String, Vector2> sizes = new HashMap<String, Vector2>();
+    // Read from the sizes once, the bunny wraps around the screen with it every step
+    final float bunnyWidth;
+    final OrthographicCamera camera = new OrthographicCamera();
+    final Array<Body> bodies = new Array<Body>();
+    World world;
+    BodyEditorLoader physicsLoader;
+    Body bunny;
+    Body ground;
+    Level level;
+    BodyPool bodyPool;
+    CustomListener collisionFilter;
+    final ContactEvents events = new ContactEvents();
+    int stepCount;
+    boolean lost;
+    // Score when the game was lost, the rest of the last step may still add to the score
+    int lostScore;
+    CarrotGame game;
+    int score, scoreCarrots;
+    long seed;
+    int counterJetpack = 0;
+    double timeElapsed = 0.0f;
+
+    // Reused by the accelerometer input
+    final float[] rotationMatrix = new float[16];
+    // Time spent in each phase of the steps, only recorded while it is enabled
+    FrameProfiler profiler = new FrameProfiler();
+    // What the renderer draws, published after each update (or each step on a PhysicsThread)
+    final SnapshotBuffer snapshots = new SnapshotBuffer();
+    // Set while a PhysicsThread steps the world, the renderer then reports the end of the game from the snapshots
+    boolean onPhysicsThread;
+    // Input of the current game being recorded, or null
+    InputRecording recording;
+    // Recorded game played again instead of reading the input, or null
+    InputRecording replay;
+    int replayStep;
+    // Input of the current step
+    boolean inputTilt;
+    byte inputDirection;
+    float inputPitch;
+
+    // Items picked up since the world was created, for the visual effects
+    int jetpacksPicked, carrotsEaten;
+    // Where the last carrots were eaten, at their count modulo EATEN_HISTORY, so each one of a burst gets its effect
+    static final int EATEN_HISTORY = 8;
+    final float[] eatenX = new float[EATEN_HISTORY], eatenY = new float[EATEN_HISTORY];
+
+    // Magic numbers for physics simulation
+    static final float STEP_TIME = 1f / 60f;
+    static final int VELOCITY_ITERATIONS = 6;
+    static final int POSITION_ITERATIONS = 2;
+    static final int MAX_SUBSTEPS = 5;
+    float accumulator = 0;
+    // Fraction of a step left in the accumulator, used to interpolate what is drawn
+    float alpha = 0;
+    float prevCameraY;
+
+    static final float MAX_JUMP = 30.0f;
+    static final float MAX_VELX = 1.5f;
+    static final float GRAV = 150.0f;
+    static final float BOUNCE_VEL = (float)(Math.sqrt(2*GRAV*MAX_JUMP));
+    // Bodies created per step, not per frame, so a replay creates them at the same steps whatever the frame rate
+    // A frame catching up with MAX_SUBSTEPS steps can therefore create up to MAX_SUBSTEPS times as many
+    static final int MAX_BODIES_PER_STEP = 4;
+
+    /**
+     * Pool of physics bodies indexed by archetype (the kind of entity)
+     * Bodies leaving the screen are deactivated and moved back into place later with setTransform,
+     * so the number of bodies in the world stays bounded however high the player climbs
+     */
+    class BodyPool {
+        final Array<Array<Body>> freeBodies = new Array<Array<Body>>(EntityTag.KINDS);
+        // Bodies of each archetype made so far, in use or free
+        final int[] created = new int[EntityTag.KINDS];
+
+        BodyPool() {
+            for (int kind = 0; kind < EntityTag.KINDS; kind++)
+                freeBodies.add(new Array<Body>(false, 16));
+        }
+
+        /**
+         * Returns a static body of the given archetype placed at (x, y), recycling a freed one if possible
+         * @param kind The kind of entity
+         * @param x X coordinate in the 2D world
+         * @param y Y coordinate in the 2D world
+         * @return An active Body instance
+         */
+        Body obtain(int kind, float x, float y) {
+            Array<Body> bodies = freeBodies.get(kind);
+            if (bodies.size == 0) {
+                created[kind]++;
+                return createBody(kind, x, y, 0, BodyDef.BodyType.StaticBody);
+            }
+            Body body = bodies.pop();
+            EntityTag tag = EntityTag.of(body);
+            tag.flags = 0;
+            // The step count may have been rewound by a replay since the last event of this body
+            tag.eventStep = -1;
+            body.setTransform(x, y, 0);
+            tag.savePosition(body);
+            body.setActive(true);
+            return body;
+        }
+
+        /**
+         * Creates inactive bodies of an archetype until the pool made at least a given number of them
+         * Creating a body allocates, in Java and in Box2D, so this is done before the game runs
+         * @param kind The kind of entity
+         * @param count Number of bodies of this kind the level may use at once
+         */
+        void reserve(int kind, int count) {
+            while (created[kind] < count) {
+                Body body = createBody(kind, 0, 0, 0, BodyDef.BodyType.StaticBody);
+                body.setActive(false);
+                freeBodies.get(kind).add(body);
+                created[kind]++;
+            }
+        }
+
+        /**
+         * Gives a body back to the pool, it is removed from the simulation until obtained again
+         * @param body The body to recycle
+         */
+        void free(Body body) {
+            body.setActive(false);
+            freeBodies.get(EntityTag.of(body).kind).add(body);
+        }
+    }
+
+    /**
+     * Internal class to handle the level generation
+     * Chunks are laid out on a worker thread by a LevelGenerator, then their bodies are
+     * created here by the thread stepping the world, a few per step
+     * Chunks come bottom to top, so platforms and enemies are both sorted by height
+     */
+    class Level {
+        // Platforms below this index have their bodies, the ones above are waiting to be materialised
+        final PlatformBuffer platforms = new PlatformBuffer(64);
+        int materialisedPlatforms;
+        final Array<Body> enemies = new Array<Body>(8);
+        // Enemies waiting to be materialised, as parallel arrays of coordinates
+        final FloatArray pendingEnemyX = new FloatArray(8), pendingEnemyY = new FloatArray(8);
+        final LevelGenerator generator;
+        final AsyncExecutor executor = new AsyncExecutor(1);
+        AsyncResult<LevelChunk> nextChunk;
+        // Chunks added since the level was created, adding one allocates
+        int chunksAdded;
+        float threshold = MAX_JUMP/4;
+        float lowerBound = 0;
+        float platformWidth, platformHeight;
+        float carrotWidth, carrotHeight;
+        float springWidth, springHeight;
+        float jetpackWidth, jetpackHeight;
+        float enemyWidth, enemyHeight;
+        float cloudWidth;
+        // Height above its bottom that a platform and the item on it can cover
+        float platformReach;
+
+        /**
+         * Constructor for the level generator
+         */
+        Level() {
+            platformWidth = sizes.get("ground_grass").x;
+            platformHeight = sizes.get("ground_grass").y;
+            carrotWidth = sizes.get("carrot").x;
+            carrotHeight = sizes.get("carrot").y;
+            springWidth = sizes.get("spring").x;
+            springHeight = sizes.get("spring").y;
+            jetpackWidth = sizes.get("jetpack").x;
+            jetpackHeight = sizes.get("jetpack").y;
+            cloudWidth = sizes.get("cloud").x;
+            enemyWidth = sizes.get("flyMan_jump").x;
+            enemyHeight = sizes.get("flyMan_jump").y;
+            float itemHeight = Math.max(carrotHeight, Math.max(sizes.get("spring_out").y, jetpackHeight));
+            platformReach = platformHeight + itemHeight * 1.25f;
+            generator = new LevelGenerator(platformWidth, platformHeight, cloudWidth, threshold, seed);
+        }
+
+        /**
+         * Gives every body of the level back to the pool and starts a new level from the bottom
+         * The chunk the worker may still be laying out is waited for and thrown away
+         */
+        void reset() {
+            if (nextChunk != null)
+                nextChunk.get();
+            nextChunk = null;
+            for (int i = 0; i < materialisedPlatforms; i++) {
+                bodyPool.free(platforms.ground(i));
+                if (platforms.item(i) != null)
+                    bodyPool.free(platforms.item(i));
+            }
+            materialisedPlatforms = 0;
+            platforms.clear();
+            for (int i = 0; i < enemies.size; i++)
+                bodyPool.free(enemies.get(i));
+            enemies.clear();
+            pendingEnemyX.clear();
+            pendingEnemyY.clear();
+            threshold = MAX_JUMP/4;
+            lowerBound = 0;
+            generator.reset(threshold, seed);
+        }
+
+        /**
+         * Makes room ahead of time for everything the level can hold at once with the current camera window
+         * A chunk is two screens high and is added when the camera gets within a screen of the top, the level is
+         * pruned right after, so it never spans more than six screens. Platforms are at least 3 platform heights
+         * apart, rounded down by the generator. Each one carries an item at most, of any kind, so nothing bounds
+         * a kind of item below the number of platforms. There is one enemy per chunk
+         */
+        void reserve() {
+            int maxPlatforms = (int) Math.ceil(6 * camera.viewportHeight / Math.max(1, (int) (3 * platformHeight))) + 2;
+            platforms.ensureCapacity(maxPlatforms);
+            bodyPool.reserve(EntityTag.PLATFORM, maxPlatforms);
+            bodyPool.reserve(EntityTag.CARROT, maxPlatforms);
+            bodyPool.reserve(EntityTag.SPRING, maxPlatforms);
+            bodyPool.reserve(EntityTag.JETPACK, maxPlatforms);
+            bodyPool.reserve(EntityTag.ENEMY, 4);
+        }
+
+        /**
+         * Asks the worker thread to lay out the chunk following the last one requested
+         */
+        void requestChunk() {
+            final float width = camera.viewportWidth;
+            final float height = camera.viewportHeight;
+            nextChunk = executor.submit(new AsyncTask<LevelChunk>() {
+                @Override
+                public LevelChunk call() {
+                    return generator.next(width, height);
+                }
+            });
+        }
+
+        /**
+         * This method is called every step to keep the level ahead of the player
+         * A new chunk is added whenever the camera gets close to the top of the level
+         */
+        void update() {
+            if (nextChunk == null)
+                requestChunk();
+            if (threshold - camera.position.y < camera.viewportHeight) {
+                // The worker has a whole screen of lead, so this only blocks if it fell behind
+                add(nextChunk.get());
+                requestChunk();
+            }
+            materialise(MAX_BODIES_PER_STEP);
+        }
+
+        /**
+         * Queues the content of a generated chunk and drops what went below the screen
+         * @param chunk The chunk laid out by the worker thread
+         */
+        void add(LevelChunk chunk) {
+            for (int i = 0; i < chunk.size(); i++) {
+                platforms.add(chunk.platformX.get(i), chunk.platformY.get(i), chunk.platformMode.get(i));
+            }
+            if (chunk.hasEnemy) {
+                pendingEnemyX.add(chunk.enemyX);
+                pendingEnemyY.add(chunk.enemyY);
+            }
+            threshold = chunk.top;
+            chunksAdded++;
+            lowerBound = camera.position.y - camera.viewportHeight/2;
+            prune();
+        }
+
+        /**
+         * Creates the physics objects of the pending platforms and enemies, lowest first
+         * Anything already inside the camera window is created regardless of the budget
+         * @param budget Maximum number of bodies to create
+         */
+        void materialise(int budget) {
+            float top = camera.position.y + camera.viewportHeight/2;
+            while (materialisedPlatforms < platforms.size() && (budget > 0 || platforms.y(materialisedPlatforms) < top)) {
+                int i = materialisedPlatforms++;
+                float px = platforms.x(i);
+                float py = platforms.y(i);
+                int mode = platforms.mode(i);
+                Body ground = bodyPool.obtain(EntityTag.PLATFORM, px, py);
+                Body item = null;
+                budget--;
+                if (mode == PlatformBuffer.CARROT) {
+                    float x = px + platformWidth/2 - carrotWidth/1.5f;
+                    float y = py + platformHeight + carrotHeight/4;
+                    item = bodyPool.obtain(EntityTag.CARROT, x, y);
+                    budget--;
+                } else if (mode == PlatformBuffer.SPRING) {
+                    float x = px + platformWidth/2 - springWidth/1.5f;
+                    float y = py + platformHeight + springHeight/4;
+                    item = bodyPool.obtain(EntityTag.SPRING, x, y);
+                    budget--;
+                } else if (mode == PlatformBuffer.JETPACK) {
+                    float x = px + platformWidth/2 - jetpackWidth/1.5f;
+                    float y = py + platformHeight + jetpackHeight/4;
+                    item = bodyPool.obtain(EntityTag.JETPACK, x, y);
+                    budget--;
+                }
+                platforms.setBodies(i, ground, item);
+            }
+            while (pendingEnemyY.size > 0 && (budget > 0 || pendingEnemyY.first() < top)) {
+                float x = pendingEnemyX.removeIndex(0);
+                float y = pendingEnemyY.removeIndex(0);
+                enemies.add(bodyPool.obtain(EntityTag.ENEMY, x, y));
+                budget--;
+            }
+        }
+
+        /**
+         * Removes everything that went below the screen and gives the bodies back to the pool
+         */
+        void prune() {
+            while (platforms.size() > 0 && platforms.y(0) < lowerBound) {
+                if (materialisedPlatforms > 0) {
+                    bodyPool.free(platforms.ground(0));
+                    if (platforms.item(0) != null)
+                        bodyPool.free(platforms.item(0));
+                    materialisedPlatforms--;
+                }
+                platforms.removeFirst();
+            }
+            for (int i = 0; i < enemies.size; ) {
+                Body e = enemies.get(i);
+                if (e.getPosition().y + enemyHeight < lowerBound) {
+                    bodyPool.free(e);
+                    enemies.removeIndex(i);
+                } else {
+                    i++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Physics-related class to handle object collisions
+     * There are special cases to handle: bunny with spring, bunny with jetpack, etc
+     * Pairs of entity kinds are dispatched through tables, whatever the order of the fixtures
+     * Only the contacts are changed here, gameplay effects are queued as ContactEvents
+     */
+    class CustomListener implements ContactListener {
+        // Actions of the dispatch tables, shifted left by one, the lowest bit tells the bunny is fixture B
+        static final int NONE = 0;
+        static final int PLATFORM = 1;
+        static final int CARROT = 2;
+        static final int SPRING = 3;
+        static final int JETPACK = 4;
+        static final int ENEMY = 5;
+        static final int BOUNCE = 6;
+        static final int SWAPPED = 1;
+
+        final int[] preSolveActions = new int[EntityTag.KINDS * EntityTag.KINDS];
+        final int[] postSolveActions = new int[EntityTag.KINDS * EntityTag.KINDS];
+
+        CustomListener() {
+            register(preSolveActions, EntityTag.PLATFORM, PLATFORM);
+            register(preSolveActions, EntityTag.CARROT, CARROT);
+            register(preSolveActions, EntityTag.SPRING, SPRING);
+            register(preSolveActions, EntityTag.JETPACK, JETPACK);
+            register(preSolveActions, EntityTag.ENEMY, ENEMY);
+            register(postSolveActions, EntityTag.GROUND, BOUNCE);
+            register(postSolveActions, EntityTag.PLATFORM, BOUNCE);
+        }
+
+        /**
+         * Fills both orderings of a (bunny, kind) pair in a dispatch table
+         */
+        private void register(int[] actions, int kind, int action) {
+            actions[EntityTag.BUNNY * EntityTag.KINDS + kind] = action << 1;
+            actions[kind * EntityTag.KINDS + EntityTag.BUNNY] = (action << 1) | SWAPPED;
+        }
+
+        private boolean handlePlatform(Body bunny) {
+            return bunny.getLinearVelocity().y < 0;
+        }
+
+        @Override
+        public void preSolve(Contact contact, Manifold oldManifold) {
+            Body bodyA = contact.getFixtureA().getBody();
+            Body bodyB = contact.getFixtureB().getBody();
+            EntityTag tagA = (EntityTag) bodyA.getUserData();
+            EntityTag tagB = (EntityTag) bodyB.getUserData();
+            int entry = preSolveActions[tagA.kind * EntityTag.KINDS + tagB.kind];
+            if (entry == NONE)
+                return;
+            boolean swapped = (entry & SWAPPED) != 0;
+            Body bunny = swapped ? bodyB : bodyA;
+            Body other = swapped ? bodyA : bodyB;
+            EntityTag otherTag = swapped ? tagA : tagB;
+            switch (entry >> 1) {
+                case PLATFORM:
+                    contact.setEnabled(handlePlatform(bunny));
+                    break;
+                case CARROT:
+                    contact.setEnabled(false);
+                    if (!otherTag.isUsed())
+                        events.push(ContactEvents.PICKUP, other, stepCount);
+                    break;
+                case SPRING:
+                    boolean isEnabled = handlePlatform(bunny);
+                    contact.setEnabled(isEnabled);
+                    if (isEnabled && !otherTag.isUsed())
+                        events.push(ContactEvents.SPRING, other, stepCount);
+                    break;
+                case JETPACK:
+                    contact.setEnabled(false);
+                    if (!otherTag.isUsed())
+                        events.push(ContactEvents.JETPACK, other, stepCount);
+                    break;
+                case ENEMY:
+                    events.push(ContactEvents.ENEMY_HIT, other, stepCount);
+                    break;
+            }
+        }
+
+        @Override
+        public void postSolve(Contact contact, ContactImpulse impulse) {
+            if (!contact.isEnabled())
+                return;
+            Body bodyA = contact.getFixtureA().getBody();
+            Body bodyB = contact.getFixtureB().getBody();
+            int entry = postSolveActions[EntityTag.of(bodyA).kind * EntityTag.KINDS + EntityTag.of(bodyB).kind];
+            if (entry == NONE)
+                return;
+            Body bunny = (entry & SWAPPED) != 0 ? bodyB : bodyA;
+            Vector2 vBunny = bunny.getLinearVelocity();
+            vBunny.y = BOUNCE_VEL;
+            bunny.setLinearVelocity(vBunny);
+        }
+
+        @Override
+        public void beginContact(Contact contact) {
+
+        }
+
+        @Override
+        public void endContact(Contact contact) {
+
+        }
+    }
+
+    /**
+     * Main constructor for the GameWorld class
+     * @param g An instance of the main CarrotGame class
+     * @param atlasData The parsed texture atlas, only used for the size of each sprite
+     * @param s The seed of the level, the same seed always produces the same level
+     */
+    public GameWorld(CarrotGame g, TextureAtlas.TextureAtlasData atlasData, long s) {
+        this(g, spriteSizes(atlasData), loadPhysics(), s);
+    }
+
+    /**
+     * Reads the collision fixtures of the bodies, for a simulation running without the AssetManager
+     */
+    private static BodyEditorLoader loadPhysics() {
+        // The loader creates Box2D shapes right away
+        Box2D.init();
+        return PhysicsLoader.read(Gdx.files.internal(Assets.PHYSICS));
+    }
+
+    /**
+     * Constructor for the GameWorld class using assets that are already loaded
+     * @param g An instance of the main CarrotGame class
+     * @param spriteSizes The size of each sprite of the atlas
+     * @param loader The collision fixtures of the bodies, it is shared and never disposed here
+     * @param s The seed of the level, the same seed always produces the same level
+     */
+    public GameWorld(CarrotGame g, Map<String, Vector2> spriteSizes, BodyEditorLoader loader, long s) {
+        game = g;
+        seed = s;
+        score = 0;
+        sizes.putAll(spriteSizes);
+        bunnyWidth = sizes.get("bunny1_walk1").x;
+
+        // Prepare physics engine
+        Box2D.init();
+        world = new World(new Vector2(0, -GRAV), true);
+        physicsLoader = loader;
+        collisionFilter = new CustomListener();
+        world.setContactListener(collisionFilter);
+
+        // Generate the beginning of the level
+        Gdx.app.log("GameWorld", "Level seed: " + seed);
+        bodyPool = new BodyPool();
+        level = new Level();
+
+        bunny = createBody(EntityTag.BUNNY, 10, 10, 0, BodyDef.BodyType.DynamicBody);
+    }
+
+    /**
+     * Computes the size of each sprite of a parsed texture atlas
+     * @param atlasData The parsed texture atlas
+     * @return The size of each sprite, by region name
+     */
+    static HashMap<String, Vector2> spriteSizes(TextureAtlas.TextureAtlasData atlasData) {
+        HashMap<String, Vector2> sizes = new HashMap<String, Vector2>();
+        for (TextureAtlas.TextureAtlasData.Region region : atlasData.getRegions()) {
+            float realScale = spriteScale(region.name);
+            sizes.put(region.name, new Vector2(region.width * realScale, region.height * realScale));
+        }
+        return sizes;
+    }
+
+    /**
+     * Starts a new game in place, on a given level
+     * The physics world, the pooled bodies and the loaded fixtures are kept, so this is far cheaper
+     * than a new GameWorld. The camera is put back at the bottom if it was already sized
+     * @param s The seed of the new level
+     */
+    void reset(long s) {
+        seed = s;
+        score = 0;
+        scoreCarrots = 0;
+        counterJetpack = 0;
+        timeElapsed = 0;
+        accumulator = 0;
+        alpha = 0;
+        lost = false;
+        replay = null;
+        if (recording != null)
+            recording.clear();
+        Gdx.app.log("GameWorld", "Level seed: " + seed);
+        level.reset();
+
+        bunny.setGravityScale(1.0f);
+        bunny.setLinearVelocity(0, 0);
+        bunny.setAngularVelocity(0);
+        bunny.setTransform(10, 10, 0);
+        bunny.setAwake(true);
+        EntityTag.of(bunny).savePosition(bunny);
+        if (camera.viewportWidth > 0)
+            resize(camera.viewportWidth, camera.viewportHeight);
+    }
+
+    /**
+     * Starts playing a recorded game again, on the level and in the world size it was recorded with
+     * The input is then read from the recording instead of the devices, until the game is reset
+     * @param r The recorded game
+     */
+    void startReplay(InputRecording r) {
+        camera.viewportWidth = r.worldWidth;
+        camera.viewportHeight = r.worldHeight;
+        reset(r.seed);
+        level.reserve();
+        stepCount = r.firstStep;
+        replay = r;
+        replayStep = 0;
+    }
+
+    /**
+     * Gives the scale to apply to a sprite of the texture atlas
+     * @param name The name of the region in the atlas
+     * @return The scale between atlas pixels and world units
+     */
+    static float spriteScale(String name) {
+        float realScale = GameScreen.SCALE;
+        if (name.equals("carrot"))
+            realScale *= 2.0f;
+        else if (name.equals("cloud"))
+            realScale *= 4.0f;
+        else if (name.equals("flyMan_jump"))
+            realScale *= 1.80f;
+        return realScale;
+    }
+
+    /**
+     * Steps our physics world using a small dt
+     */
+    private void stepWorld() {
+        world.step(STEP_TIME, VELOCITY_ITERATIONS, POSITION_ITERATIONS);
+        stepCount++;
+        applyContactEvents();
+    }
+
+    /**
+     * Applies the gameplay effects of the collisions of the last step, once the world is unlocked
+     */
+    private void applyContactEvents() {
+        while (!events.isEmpty()) {
+            int type = events.firstType();
+            EntityTag tag = EntityTag.of(events.firstBody());
+            events.removeFirst();
+            switch (type) {
+                case ContactEvents.PICKUP:
+                    tag.flags |= EntityTag.USED;
+                    break;
+                case ContactEvents.SPRING:
+                    bunny.applyLinearImpulse(0.0f, 1000.0f, 0.0f, 0.0f, true);
+                    tag.flags |= EntityTag.USED;
+                    break;
+                case ContactEvents.JETPACK:
+                    bunny.setGravityScale(0.1f);
+                    bunny.applyLinearImpulse(0.0f, 1000.0f, 0.0f, 0.0f, true);
+                    counterJetpack = 100;
+                    jetpacksPicked++;
+                    tag.flags |= EntityTag.USED;
+                    break;
+                case ContactEvents.ENEMY_HIT:
+                    lose();
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Ends the game, only once even if the bunny dies in several ways during the same frame
+     */
+    private void lose() {
+        if (lost)
+            return;
+        lost = true;
+        lostScore = score + scoreCarrots;
+        Vector2 pBunny = bunny.getPosition();
+        if (recording != null && recording.started)
+            recording.finish(lostScore, pBunny.x, pBunny.y);
+        if (replay != null) {
+            Gdx.app.log("GameWorld", "Replay ended after " + replayStep + " of " + replay.steps + " steps with a score of "
+                    + lostScore + ", " + replay.score + " recorded");
+        }
+        if (!onPhysicsThread)
+            game.switchToLost(lostScore);
+    }
+
+    /**
+     * Creates an invisible ground for the beginning of the game
+     */
+    void createGround() {
+        if (ground != null)
+            world.destroyBody(ground);
+
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = BodyDef.BodyType.StaticBody;
+        FixtureDef fixtureDef = new FixtureDef();
+        fixtureDef.friction = 1;
+        PolygonShape shape = new PolygonShape();
+        shape.setAsBox(camera.viewportWidth*3, 1);
+        fixtureDef.shape = shape;
+        ground = world.createBody(bodyDef);
+        ground.setUserData(new EntityTag(EntityTag.GROUND));
+        ground.createFixture(fixtureDef);
+        ground.setTransform(-camera.viewportWidth, 0, 0);
+
+        shape.dispose();
+    }
+
+    /**
+     * Creates a Body instance for our physics engine, Box2D
+     * @param kind The kind of entity, it gives the fixture and the size of the body
+     * @param x X coordinate in the 2D world
+     * @param y Y coordinate in the 2D world
+     * @param rotation Rotation angle (in degrees)
+     * @param bt Body type
+     * @return A Body instance ready to be manipulated
+     */
+    Body createBody(int kind, float x, float y, float rotation, BodyDef.BodyType bt) {
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = bt;
+        bodyDef.fixedRotation = true;
+        FixtureDef fd = new FixtureDef();
+        fd.density = 2.0f;
+        fd.friction = 0.0f;
+        fd.restitution = 1.0f;
+        Body body = world.createBody(bodyDef);
+        body.setUserData(new EntityTag(kind));
+        float scale = sizes.get(EntityTag.SPRITES[kind]).x;
+        physicsLoader.attachFixture(body, EntityTag.FIXTURES[kind], fd, scale);
+        body.setTransform(x, y, rotation);
+        EntityTag.of(body).savePosition(body);
+        return body;
+    }
+
+
+    /**
+     * Adapts the camera to the size of the visible world and recreates the ground
+     * @param worldWidth Width of the visible world
+     * @param worldHeight Height of the visible world
+     */
+    void resize(float worldWidth, float worldHeight) {
+        camera.viewportWidth = worldWidth;
+        camera.viewportHeight = worldHeight;
+        camera.position.set(worldWidth/2, worldHeight/2, 0);
+        camera.update();
+        prevCameraY = camera.position.y;
+        createGround();
+        level.reserve();
+        publish();
+    }
+
+    /**
+     * Advances the simulation by the time elapsed since the last frame, in fixed steps
+     * Slow frames run several steps to catch up, up to MAX_SUBSTEPS, the rest of the lag is dropped
+     * @param delta Time elapsed since the last frame (in seconds)
+     */
+    void update(float delta) {
+        accumulator += Math.min(delta, 0.25f);
+        int substeps = 0;
+        while (accumulator >= STEP_TIME && substeps < MAX_SUBSTEPS && !lost) {
+            accumulator -= STEP_TIME;
+            step();
+            substeps++;
+        }
+        if (accumulator >= STEP_TIME)
+            accumulator = 0;
+        alpha = accumulator / STEP_TIME;
+        publish();
+    }
+
+    /**
+     * Runs a single step and publishes its snapshot, for a PhysicsThread
+     */
+    void stepAndPublish() {
+        step();
+        publish();
+    }
+
+    /**
+     * Copies what the renderer needs into the back snapshot and publishes it
+     */
+    void publish() {
+        WorldSnapshot s = snapshots.back();
+        s.step = stepCount;
+        s.time = TimeUtils.nanoTime();
+        s.alpha = alpha;
+        s.lost = lost;
+        s.score = lost ? lostScore : score + scoreCarrots;
+        s.counterJetpack = counterJetpack;
+        s.carrotsEaten = carrotsEaten;
+        s.jetpacksPicked = jetpacksPicked;
+        System.arraycopy(eatenX, 0, s.eatenX, 0, EATEN_HISTORY);
+        System.arraycopy(eatenY, 0, s.eatenY, 0, EATEN_HISTORY);
+        s.cameraX = camera.position.x;
+        s.cameraY = camera.position.y;
+        s.prevCameraY = prevCameraY;
+        EntityTag bunnyTag = EntityTag.of(bunny);
+        s.bunnyX = bunny.getPosition().x;
+        s.bunnyY = bunny.getPosition().y;
+        s.prevBunnyX = bunnyTag.prevX;
+        s.prevBunnyY = bunnyTag.prevY;
+        s.bunnyAngle = bunny.getAngle();
+        s.bodies = world.getBodyCount();
+        s.contacts = world.getContactCount();
+
+        PlatformBuffer platforms = level.platforms;
+        s.platforms.copyFrom(platforms);
+        s.materialisedPlatforms = level.materialisedPlatforms;
+        s.ensureItems(platforms.x.length);
+        for (int i = 0; i < level.materialisedPlatforms; i++) {
+            int slot = platforms.slot(i);
+            Body item = platforms.item[slot];
+            if (item == null)
+                continue;
+            s.itemX[slot] = item.getPosition().x;
+            s.itemY[slot] = item.getPosition().y;
+            s.itemUsed[slot] = EntityTag.of(item).isUsed();
+        }
+
+        s.enemyX.clear();
+        s.enemyY.clear();
+        s.prevEnemyX.clear();
+        s.prevEnemyY.clear();
+        for (int i = 0; i < level.enemies.size; i++) {
+            Body e = level.enemies.get(i);
+            EntityTag tag = EntityTag.of(e);
+            s.enemyX.add(e.getPosition().x);
+            s.enemyY.add(e.getPosition().y);
+            s.prevEnemyX.add(tag.prevX);
+            s.prevEnemyY.add(tag.prevY);
+        }
+        snapshots.publish();
+    }
+
+    /**
+     * Gives the direction held on the keyboard
+     * @return InputRecording.LEFT, RIGHT or NONE
+     */
+    static byte keyDirection() {
+        if (Gdx.input.isKeyPressed(Input.Keys.LEFT))
+            return InputRecording.LEFT;
+        if (Gdx.input.isKeyPressed(Input.Keys.RIGHT))
+            return InputRecording.RIGHT;
+        return InputRecording.NONE;
+    }
+
+    /**
+     * Sets the input of the next steps, sent by the render thread to a world on a PhysicsThread
+     * @param tilt Whether the device is tilted rather than the keyboard used
+     * @param direction The direction held on the keyboard
+     * @param pitch The pitch of the device
+     */
+    void setInput(boolean tilt, byte direction, float pitch) {
+        inputTilt = tilt;
+        inputDirection = direction;
+        inputPitch = pitch;
+    }
+
+    /**
+     * Reads the input of the next step from the replayed game, or else from the devices and records it
+     */
+    private void readInput() {
+        if (replay != null) {
+            inputTilt = replay.tilt;
+            inputDirection = replay.direction(replayStep);
+            inputPitch = replay.pitch(replayStep);
+            replayStep++;
+            return;
+        }
+        // On a PhysicsThread the render thread reads the devices, its last input is kept until the next one
+        if (!onPhysicsThread) {
+            inputTilt = Gdx.input.isPeripheralAvailable(Input.Peripheral.Accelerometer);
+            inputDirection = InputRecording.NONE;
+            inputPitch = 0;
+            if (inputTilt) {
+                Gdx.input.getRotationMatrix(rotationMatrix);
+                inputPitch = rotationMatrix[9];
+            } else {
+                inputDirection = keyDirection();
+            }
+        }
+        if (recording != null && !recording.finished) {
+            if (!recording.started)
+                recording.start(seed, camera.viewportWidth, camera.viewportHeight, stepCount, inputTilt);
+            recording.record(inputDirection, inputPitch);
+        }
+    }
+
+    /**
+     * Advances the simulation by one fixed step: input, physics, level stream and camera follow
+     */
+    private void step() {
+        long t = profiler.start();
+        EntityTag.of(bunny).savePosition(bunny);
+        for (int i = 0; i < level.enemies.size; i++)
+            EntityTag.of(level.enemies.get(i)).savePosition(level.enemies.get(i));
+        prevCameraY = camera.position.y;
+        timeElapsed += 0.01f;
+        Vector2 vBunny = bunny.getLinearVelocity();
+
+        readInput();
+        if (!inputTilt) {
+            if (inputDirection == InputRecording.LEFT){
+                vBunny.x = -60.0f;
+            } else if (inputDirection == InputRecording.RIGHT){
+                vBunny.x = 60.0f;
+            } else {
+                vBunny.x = 0.0f;
+            }
+        } else {
+            Vector2 pBunny = bunny.getPosition();
+            pBunny.x += Math.max(Math.min(5.0f * inputPitch, MAX_VELX), -MAX_VELX);
+            bunny.setTransform(pBunny, bunny.getAngle());
+        }
+
+        bunny.setLinearVelocity(vBunny);
+
+        Vector2 pBunny = bunny.getPosition();
+        float halfBunny = bunnyWidth/2;
+        if (pBunny.x > camera.viewportWidth - halfBunny) {
+            pBunny.x = - halfBunny;
+            bunny.setTransform(pBunny, bunny.getAngle());
+            EntityTag.of(bunny).savePosition(bunny);
+        } else if (pBunny.x < - halfBunny) {
+            pBunny.x = camera.viewportWidth - halfBunny;
+            bunny.setTransform(pBunny, bunny.getAngle());
+            EntityTag.of(bunny).savePosition(bunny);
+        }
+        t = profiler.lap(FrameProfiler.INPUT, t);
+
+        stepWorld();
+        t = profiler.lap(FrameProfiler.PHYSICS, t);
+
+        PlatformBuffer platforms = level.platforms;
+        for (int i = 0; i < level.materialisedPlatforms; i++) {
+            int mode = platforms.mode(i);
+            if (mode != PlatformBuffer.CARROT && mode != PlatformBuffer.JETPACK)
+                continue;
+            Body item = platforms.item(i);
+            if (!EntityTag.of(item).isUsed())
+                continue;
+            if (mode == PlatformBuffer.CARROT) {
+                Vector2 cPos = item.getPosition();
+                int eaten = carrotsEaten++ & (EATEN_HISTORY - 1);
+                eatenX[eaten] = cPos.x + level.carrotWidth/2;
+                eatenY[eaten] = cPos.y;
+                scoreCarrots += 50;
+            }
+            bodyPool.free(item);
+            platforms.clearItem(i);
+        }
+
+        for (int i = 0; i < level.enemies.size; i++) {
+            Body e = level.enemies.get(i);
+            float deltaX = (float)(Math.sin(timeElapsed) * (camera.viewportWidth/2 - level.enemyWidth));
+            float deltaY = (float)Math.sin(timeElapsed*8) * 0.15f;
+            e.setTransform(camera.position.x - level.enemyWidth/2 + deltaX , e.getPosition().y + deltaY, 0);
+        }
+
+        if (counterJetpack > 0) {
+            counterJetpack--;
+            if (counterJetpack == 0)
+                bunny.setGravityScale(1.0f);
+        }
+
+        if ((camera.position.y - camera.viewportHeight/2) > score) {
+            score = (int)(camera.position.y - camera.viewportHeight/2);
+        }
+        t = profiler.lap(FrameProfiler.GAMEPLAY, t);
+
+        level.update();
+        t = profiler.lap(FrameProfiler.LEVEL, t);
+
+        if (bunny.getPosition().y > camera.position.y) {
+            camera.position.y = bunny.getPosition().y;
+            camera.update();
+        }
+
+        if (bunny.getPosition().y < camera.position.y - camera.viewportHeight/2) {
+            lose();
+        }
+        profiler.lap(FrameProfiler.GAMEPLAY, t);
+    }
+
+    /**
+     * Counts the bodies currently taking part in the simulation (pooled bodies are inactive)
+     * @return The number of active bodies
+     */
+    int getActiveBodyCount() {
+        world.getBodies(bodies);
+        int count = 0;
+        for (int i = 0; i < bodies.size; i++) {
+            if (bodies.get(i).isActive())
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Releases the physics world and the level generation thread
+     */
+    void dispose() {
+        level.executor.dispose();
+        world.dispose();
+    }
+}
@@ -0,0 +1,273 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncTask;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+/**
+ * Best scores of the player, only the top CAPACITY ones are kept, sorted from the best
+ * They are stored as fixed size binary records, so reading them costs the same however many games were played
+ * The file is written next to itself then renamed over the old one, a crash never leaves it half written
+ * Where the old file has to be removed first, the scores are read back from the new one until it is renamed,
+ * if it was written completely
+ * Scores of finished games are written by a single background thread, the game never waits for the storage
+ * @author Benoit Chabod
+ */
+class HighscoreStore implements Disposable {
+    static final int CAPACITY = 10;
+    static final String FILE = "scores.bin";
+    // Text file of the previous versions, one "date | score" line per game, read once if there is no binary file
+    static final String LEGACY_FILE = "scores.txt";
+    static final int MAGIC = 0x4353434F; // "CSCO"
+    // Magic and count, then a score (int) and a date (long, in milliseconds) per record
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 12;
+
+    // Guarded by this, the writer thread takes a copy of them
+    final int[] scores = new int[CAPACITY];
+    final long[] times = new long[CAPACITY];
+    int size;
+    final FileHandle file, tempFile, legacyFile;
+
+    // Only used by the writer thread
+    final int[] writtenScores = new int[CAPACITY];
+    final long[] writtenTimes = new long[CAPACITY];
+    final AsyncExecutor writer = new AsyncExecutor(1);
+    // Set while a write is queued and has not copied the scores yet, later scores go into the same write
+    boolean writeQueued;
+    // Last game submitted, a game is only counted once however many times it is submitted
+    int lastRunId = -1;
+
+    /**
+     * Main constructor for the HighscoreStore class, nothing is read until load() is called
+     * @param file The binary file of the scores
+     * @param legacyFile The text file to migrate if the binary file does not exist yet
+     */
+    HighscoreStore(FileHandle file, FileHandle legacyFile) {
+        this.file = file;
+        this.tempFile = file.sibling(file.name() + ".tmp");
+        this.legacyFile = legacyFile;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized int score(int rank) {
+        return scores[rank];
+    }
+
+    synchronized long time(int rank) {
+        return times[rank];
+    }
+
+    /**
+     * Reads the scores, migrating the text file of the previous versions the first time
+     * A damaged file is ignored, the scores start over rather than the game failing
+     */
+    synchronized void load() {
+        size = 0;
+        try {
+            if (file.exists()) {
+                read(file);
+            } else if (tempFile.exists() && recover()) {
+                save();
+            } else if (legacyFile.exists()) {
+                migrate();
+                save();
+            }
+        } catch (IOException e) {
+            Gdx.app.error("HighscoreStore", "Cannot read the scores", e);
+            size = 0;
+        }
+    }
+
+    private void read(FileHandle source) throws IOException {
+        DataInputStream in = new DataInputStream(source.read(HEADER_SIZE + CAPACITY * RECORD_SIZE));
+        try {
+            if (in.readInt() != MAGIC)
+                throw new IOException(source.name() + " is not a score file");
+            int count = in.readInt();
+            if (count < 0 || count > CAPACITY)
+                throw new IOException(source.name() + " holds " + count + " scores");
+            if (source.length() != HEADER_SIZE + count * RECORD_SIZE)
+                throw new IOException(source.name() + " is " + source.length() + " bytes long for " + count + " scores");
+            for (int i = 0; i < count; i++) {
+                int score = in.readInt();
+                long time = in.readLong();
+                insert(score, time);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the scores of a write the game stopped before renaming, after it removed the old file
+     * A write cut short is deleted, the scores are then migrated again from the text file if there is one
+     * @return Whether the scores were read
+     */
+    private boolean recover() {
+        try {
+            read(tempFile);
+            return true;
+        } catch (IOException e) {
+            Gdx.app.error("HighscoreStore", "Ignoring the unfinished " + tempFile.name(), e);
+            tempFile.delete();
+            size = 0;
+            return false;
+        }
+    }
+
+    /**
+     * Keeps the best scores of the text file, which is left as it is
+     */
+    private void migrate() throws IOException {
+        DateFormat df = new SimpleDateFormat("dd/MM/yyyy");
+        BufferedReader br = legacyFile.reader(1024);
+        try {
+            for (String line; (line = br.readLine()) != null; ) {
+                int separator = line.indexOf('|');
+                if (separator < 0)
+                    continue;
+                try {
+                    int score = Integer.parseInt(line.substring(separator + 1).trim());
+                    // Dates are slow to parse, most lines of a long history are not kept anyway
+                    if (size == CAPACITY && score <= scores[CAPACITY - 1])
+                        continue;
+                    insert(score, df.parse(line.substring(0, separator).trim()).getTime());
+                } catch (ParseException e) {
+                    // Not a line written by the game
+                } catch (NumberFormatException e) {
+                    // Not a line written by the game either
+                }
+            }
+        } finally {
+            br.close();
+        }
+        Gdx.app.log("HighscoreStore", "Migrated " + size + " scores from " + legacyFile.name());
+    }
+
+    /**
+     * Adds the score of a game if it is among the best ones, in O(CAPACITY)
+     * A score equal to a stored one ranks after it, the oldest score keeps its place
+     * @param score The score of the game
+     * @param time When the game was played (in milliseconds)
+     * @return The rank of the score, or -1 if it is not kept
+     */
+    synchronized int insert(int score, long time) {
+        int rank = size;
+        while (rank > 0 && scores[rank - 1] < score)
+            rank--;
+        if (rank == CAPACITY)
+            return -1;
+        int moved = Math.min(size, CAPACITY - 1) - rank;
+        System.arraycopy(scores, rank, scores, rank + 1, moved);
+        System.arraycopy(times, rank, times, rank + 1, moved);
+        scores[rank] = score;
+        times[rank] = time;
+        size = Math.min(size + 1, CAPACITY);
+        return rank;
+    }
+
+    /**
+     * Records the score of a finished game and writes the scores on the writer thread if it is kept
+     * It returns right away, the new score can be read at once but reaches the file a bit later
+     * @param runId Number of the game, a game submitted again is ignored
+     * @param score The score of the game
+     * @param time When the game was played (in milliseconds)
+     * @return The rank of the score, or -1 if it is not kept or the game was already submitted
+     */
+    synchronized int submit(int runId, int score, long time) {
+        if (runId == lastRunId)
+            return -1;
+        lastRunId = runId;
+        int rank = insert(score, time);
+        if (rank >= 0 && !writeQueued) {
+            writeQueued = true;
+            writer.submit(new AsyncTask<Void>() {
+                @Override
+                public Void call() {
+                    flush();
+                    return null;
+                }
+            });
+        }
+        return rank;
+    }
+
+    /**
+     * Writes a copy of the current scores, runs on the writer thread
+     */
+    private void flush() {
+        int count;
+        synchronized (this) {
+            writeQueued = false;
+            count = size;
+            System.arraycopy(scores, 0, writtenScores, 0, count);
+            System.arraycopy(times, 0, writtenTimes, 0, count);
+        }
+        try {
+            write(writtenScores, writtenTimes, count);
+        } catch (IOException e) {
+            Gdx.app.error("HighscoreStore", "Cannot save the scores", e);
+        }
+    }
+
+    /**
+     * Writes the scores right away, on the calling thread
+     */
+    synchronized void save() throws IOException {
+        write(scores, times, size);
+    }
+
+    /**
+     * Writes scores into a temporary file, then renames it over the score file
+     */
+    private void write(int[] recordScores, long[] recordTimes, int count) throws IOException {
+        File target = file.file();
+        File temp = tempFile.file();
+        if (target.getParentFile() != null)
+            target.getParentFile().mkdirs();
+        FileOutputStream stream = new FileOutputStream(temp);
+        DataOutputStream out = new DataOutputStream(stream);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeInt(recordScores[i]);
+                out.writeLong(recordTimes[i]);
+            }
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(target)) {
+            // Windows does not rename over an existing file, load() reads the temporary file if this one is gone
+            target.delete();
+            if (!temp.renameTo(target))
+                throw new IOException("Cannot rename " + temp + " to " + target);
+        }
+    }
+
+    /**
+     * Waits for the scores being written, then stops the writer thread
+     */
+    @Override
+    public void dispose() {
+        writer.dispose();
+    }
+}
@@ -0,0 +1,190 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.ByteArray;
+import com.badlogic.gdx.utils.FloatArray;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Input of one game, step by step, with what it takes to play the game again the same way:
+ * the seed of the level, the size of the world and the step count the game started at
+ * Keyboard games take 2 bits per step, games on a tilted device a float per step
+ * How the game ended (step, score and position of the bunny) is kept to check a replay against it
+ * The world must keep its size during the game, a resized window is not replayed
+ * @author Benoit Chabod
+ */
+class InputRecording {
+    static final int MAGIC = 0x43524543; // "CREC"
+    static final int VERSION = 1;
+    // Recording of the last game played, in the local storage
+    static final String FILE = "last-game.rec";
+
+    // Directions held on the keyboard
+    static final byte NONE = 0;
+    static final byte LEFT = 1;
+    static final byte RIGHT = 2;
+
+    long seed;
+    float worldWidth, worldHeight;
+    int firstStep;
+    boolean tilt;
+    boolean started, finished;
+    int steps;
+    final ByteArray directions = new ByteArray();
+    final FloatArray pitches = new FloatArray();
+    int score;
+    float endX, endY;
+
+    /**
+     * Drops the recorded steps, the next step starts a new recording
+     */
+    void clear() {
+        started = false;
+        finished = false;
+        steps = 0;
+        directions.clear();
+        pitches.clear();
+    }
+
+    /**
+     * Starts recording a game
+     * @param seed The seed of the level
+     * @param worldWidth Width of the world the game is played in
+     * @param worldHeight Height of the world the game is played in
+     * @param firstStep Step count of the simulation before the first step of the game
+     * @param tilt Whether the game is steered with the accelerometer rather than the keyboard
+     */
+    void start(long seed, float worldWidth, float worldHeight, int firstStep, boolean tilt) {
+        clear();
+        this.seed = seed;
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+        this.firstStep = firstStep;
+        this.tilt = tilt;
+        started = true;
+    }
+
+    /**
+     * Records the input of one step
+     * @param direction The direction held on the keyboard, unused when tilting
+     * @param pitch The pitch of the device, unused with the keyboard
+     */
+    void record(byte direction, float pitch) {
+        if (tilt)
+            pitches.add(pitch);
+        else
+            directions.add(direction);
+        steps++;
+    }
+
+    /**
+     * Records how the game ended
+     * @param score The final score
+     * @param x X coordinate of the bunny
+     * @param y Y coordinate of the bunny
+     */
+    void finish(int score, float x, float y) {
+        this.score = score;
+        endX = x;
+        endY = y;
+        finished = true;
+    }
+
+    /**
+     * Gives the direction held during a step, nothing is held after the end of the recording
+     */
+    byte direction(int step) {
+        return step < directions.size ? directions.get(step) : NONE;
+    }
+
+    /**
+     * Gives the pitch of the device during a step, the device is held flat after the end of the recording
+     */
+    float pitch(int step) {
+        return step < pitches.size ? pitches.get(step) : 0;
+    }
+
+    /**
+     * Writes the recording, the file is replaced
+     * @param file The file to write
+     */
+    void write(FileHandle file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file.write(false)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeFloat(worldWidth);
+            out.writeFloat(worldHeight);
+            out.writeInt(firstStep);
+            out.writeBoolean(tilt);
+            out.writeInt(steps);
+            out.writeInt(score);
+            out.writeFloat(endX);
+            out.writeFloat(endY);
+            if (tilt) {
+                for (int i = 0; i < steps; i++)
+                    out.writeFloat(pitches.get(i));
+            } else {
+                // Four steps per byte, the first one in the low bits
+                for (int i = 0; i < steps; i += 4) {
+                    int packed = 0;
+                    for (int j = 0; j < 4 && i + j < steps; j++)
+                        packed |= directions.get(i + j) << (2 * j);
+                    out.writeByte(packed);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a recording written by write()
+     * @param file The file to read
+     * @return The recording, already finished
+     */
+    static InputRecording read(FileHandle file) throws IOException {
+        InputRecording recording = new InputRecording();
+        DataInputStream in = new DataInputStream(file.read(8192));
+        try {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file.name() + " is not a game recording");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException(file.name() + " has version " + version + ", expected " + VERSION);
+            long seed = in.readLong();
+            float worldWidth = in.readFloat();
+            float worldHeight = in.readFloat();
+            int firstStep = in.readInt();
+            boolean tilt = in.readBoolean();
+            recording.start(seed, worldWidth, worldHeight, firstStep, tilt);
+            int steps = in.readInt();
+            if (steps < 0)
+                throw new IOException(file.name() + " holds " + steps + " steps");
+            int score = in.readInt();
+            float endX = in.readFloat();
+            float endY = in.readFloat();
+            if (tilt) {
+                recording.pitches.ensureCapacity(steps);
+                for (int i = 0; i < steps; i++)
+                    recording.record(NONE, in.readFloat());
+            } else {
+                recording.directions.ensureCapacity(steps);
+                for (int i = 0; i < steps; i += 4) {
+                    int packed = in.readUnsignedByte();
+                    for (int j = 0; j < 4 && i + j < steps; j++)
+                        recording.record((byte) ((packed >> (2 * j)) & 3), 0);
+                }
+            }
+            recording.finish(score, endX, endY);
+        } finally {
+            in.close();
+        }
+        return recording;
+    }
+}
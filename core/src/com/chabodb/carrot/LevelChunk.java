@@ -0,0 +1,24 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Pure data description of a slice of level (platforms and enemy positions)
+ * Chunks are laid out ahead of time by the LevelGenerator and never touch Box2D
+ * @author Benoit Chabod
+ */
+class LevelChunk {
+    // 0 NORMAL, 1 CARROT, 2 SPRING, 3 JETPACK
+    final FloatArray platformX = new FloatArray();
+    final FloatArray platformY = new FloatArray();
+    final IntArray platformMode = new IntArray();
+    boolean hasEnemy;
+    float enemyX, enemyY;
+    // Generation threshold once this chunk has been added to the level
+    float top;
+
+    int size() {
+        return platformMode.size;
+    }
+}
@@ -0,0 +1,87 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+/**
+ * Pure-data stage of the level generation, it lays out the next chunk of the level
+ * This class does not touch the physics world so it can safely run on a worker thread
+ * For a given seed and viewport size, the same stream of chunks is always generated
+ * @author Benoit Chabod
+ */
+class LevelGenerator {
+    final float platformWidth, platformHeight;
+    final float cloudWidth;
+    final RandomXS128 random;
+    float threshold;
+
+    /**
+     * Constructor for the level generator
+     * @param platformWidth Width of a platform sprite
+     * @param platformHeight Height of a platform sprite
+     * @param cloudWidth Width of a cloud sprite
+     * @param startThreshold Height at which the first chunk begins
+     * @param seed Seed of the level
+     */
+    LevelGenerator(float platformWidth, float platformHeight, float cloudWidth, float startThreshold, long seed) {
+        this.platformWidth = platformWidth;
+        this.platformHeight = platformHeight;
+        this.cloudWidth = cloudWidth;
+        this.threshold = startThreshold;
+        this.random = new RandomXS128(seed);
+    }
+
+    /**
+     * Starts a new level, the chunks generated afterwards are the same as with a new generator
+     * @param startThreshold Height at which the first chunk begins
+     * @param seed Seed of the level
+     */
+    void reset(float startThreshold, long seed) {
+        threshold = startThreshold;
+        random.setSeed(seed);
+    }
+
+    int randomInt(int Min, int Max) {
+        return Min + random.nextInt((Max - Min) + 1);
+    }
+    int randomInt(float Min, float Max) {
+        return this.randomInt((int) Min, (int) Max);
+    }
+
+    /**
+     * Lays out the next chunk, twice the height of the device screen above the previous one
+     * @param viewportWidth Width of the camera viewport
+     * @param viewportHeight Height of the camera viewport
+     * @return The chunk, ready to be materialised by the level
+     */
+    LevelChunk next(float viewportWidth, float viewportHeight) {
+        LevelChunk chunk = new LevelChunk();
+        for(float yPos = threshold + 2*platformHeight; yPos < threshold + 2*viewportHeight;) {
+            int xPos = randomInt(0, (int)(viewportWidth - platformWidth));
+            int mode;
+            if (randomInt(0,10)%4 != 0) {
+                mode = PlatformBuffer.NORMAL;
+            } else {
+                // CARROT, SPRING or JETPACK
+                int rnd = randomInt(0,10)%3;
+                mode = rnd + 1;
+                if (mode == PlatformBuffer.JETPACK) {
+                    if (randomInt(0,10)%2 == 0)
+                        mode = PlatformBuffer.NORMAL;
+                }
+            }
+            chunk.platformX.add(xPos);
+            chunk.platformY.add(yPos);
+            chunk.platformMode.add(mode);
+
+            yPos += randomInt(3*platformHeight, GameWorld.MAX_JUMP/3);
+        }
+        threshold += 2*viewportHeight;
+        chunk.top = threshold;
+        if (randomInt(0,10)%2 < 3) {
+            chunk.hasEnemy = true;
+            chunk.enemyX = randomInt(0, viewportWidth/2 + cloudWidth);
+            chunk.enemyY = threshold + viewportHeight/2;
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,88 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.utils.viewport.ExtendViewport;
+
+/**
+ * Simple class inheriting Screen that shows a progress bar while the assets load at startup
+ * The loading only gets part of each frame, so the screen keeps drawing
+ * @author Benoit Chabod
+ */
+public class LoadingScreen implements Screen {
+    // Time given to the loading on each frame (in milliseconds)
+    static final int FRAME_BUDGET = 12;
+
+    OrthographicCamera camera;
+    ExtendViewport viewport;
+    ShapeRenderer shapeRenderer;
+    CarrotGame game;
+
+    /**
+     * Main constructor for the LoadingScreen class
+     * @param g An instance of the main CarrotGame class
+     */
+    public LoadingScreen(CarrotGame g) {
+        super();
+        game = g;
+    }
+
+    @Override
+    public void show() {
+        camera = new OrthographicCamera();
+        viewport = new ExtendViewport(100, 100, camera);
+        shapeRenderer = new ShapeRenderer();
+    }
+
+    @Override
+    public void render(float delta) {
+        AssetManager assets = game.assets;
+        if (assets.update(FRAME_BUDGET)) {
+            game.finishLoading();
+            return;
+        }
+        Gdx.gl.glClearColor(0.57f, 0.77f, 0.85f, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+        float width = viewport.getWorldWidth() * 0.6f;
+        float x = camera.position.x - width/2;
+        float y = camera.position.y - 2;
+        shapeRenderer.setProjectionMatrix(camera.combined);
+        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+        shapeRenderer.setColor(Color.WHITE);
+        shapeRenderer.rect(x, y, width, 4);
+        shapeRenderer.setColor(Color.ORANGE);
+        shapeRenderer.rect(x, y, width * assets.getProgress(), 4);
+        shapeRenderer.end();
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        viewport.update(width, height, true);
+    }
+
+    @Override
+    public void pause() {
+
+    }
+
+    @Override
+    public void resume() {
+
+    }
+
+    @Override
+    public void hide() {
+
+    }
+
+    @Override
+    public void dispose() {
+        shapeRenderer.dispose();
+    }
+}
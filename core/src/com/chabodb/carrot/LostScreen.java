@@ -2,7 +2,6 @@ package com.chabodb.carrot;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
-import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
@@ -12,7 +11,6 @@ import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.ui.Image;
@@ -23,10 +21,6 @@ import com.badlogic.gdx.utils.TimeUtils;
 import com.badlogic.gdx.utils.viewport.ExtendViewport;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
 /**
  * Simple class inheriting Screen that represents the game over transition
  * @author Benoit Chabod
@@ -44,45 +38,36 @@ public class LostScreen implements Screen {
     int score;
 
     /**
-     * Main constructor for the LostScreen class
+     * Main constructor for the LostScreen class, the screen is reused for every game over
      * @param g An instance of the main CarrotGame class
      */
-    public LostScreen(CarrotGame g, int s) {
+    public LostScreen(CarrotGame g) {
         super();
         game = g;
-        score = s;
-    }
-
-    @Override
-    public void show() {
         camera = new OrthographicCamera();
         viewport = new ExtendViewport(1000, 1000, camera);
         batch = new SpriteBatch();
-        gameTitle = new Image(new TextureRegion(new Texture(Gdx.files.internal("game_over.png"))));
+        gameTitle = new Image(new TextureRegion(game.assets.get(Assets.GAME_OVER, Texture.class)));
         gameTitle.setScale(0.5f);
         stage = new Stage(new ScreenViewport());
         stage.addActor(gameTitle);
-        Gdx.input.setInputProcessor(stage);
+        layout = new GlyphLayout();
+    }
 
-        FreeTypeFontGenerator generator = new FreeTypeFontGenerator(Gdx.files.internal("pamela.ttf"));
-        FreeTypeFontGenerator.FreeTypeFontParameter parameter = new FreeTypeFontGenerator.FreeTypeFontParameter();
-        parameter.size = 80;
-        font = generator.generateFont(parameter);
-        generator.dispose();
+    @Override
+    public void show() {
+        Gdx.input.setInputProcessor(stage);
 
-        layout = new GlyphLayout();
+        font = game.font;
+        font.getData().setScale(1.0f);
+        font.setColor(Color.WHITE);
         // font.setColor(Color.ORANGE);
     }
 
     @Override
     public void render(float delta) {
+        // The score was submitted when the game ended
         if(Gdx.input.isTouched()) {
-
-            FileHandle file = Gdx.files.local("scores.txt");
-            Date date = new Date(TimeUtils.millis());
-            DateFormat df = new SimpleDateFormat("dd/MM/yyyy");
-            file.writeString("\n" + df.format(date) + " | " + score, true);
-
             game.switchToMenu();
         }
         Gdx.gl.glClearColor(0.57f, 0.77f, 0.85f, 1);
@@ -131,6 +116,7 @@ public class LostScreen implements Screen {
 
     @Override
     public void dispose() {
-
+        batch.dispose();
+        stage.dispose();
     }
 }
@@ -42,30 +42,33 @@ public class MenuScreen implements Screen {
         super();
         game = g;
         isMenuDisplayed = false;
+        create();
     }
 
     /**
      * Useful method to create a button from an image
-     * @param path The relative path to the image
+     * @param path The relative path to the image, loaded by the AssetManager
      * @return An ImageButton instance for the created button
      */
     private ImageButton createButton(String path) {
-        Texture t = new Texture(Gdx.files.internal(path));
+        Texture t = game.assets.get(path, Texture.class);
         TextureRegion region = new TextureRegion(t);
         TextureRegionDrawable drawable = new TextureRegionDrawable(region);
         return new ImageButton(drawable);
     }
 
-    @Override
-    public void show() {
+    /**
+     * Builds the widgets of the menu, once only since the menu is shown again after every game
+     */
+    private void create() {
         camera = new OrthographicCamera();
         viewport = new ExtendViewport(100, 100, camera);
         batch = new SpriteBatch();
-        gameTitle = new Image(new TextureRegion(new Texture(Gdx.files.internal("title.png"))));
+        gameTitle = new Image(new TextureRegion(game.assets.get(Assets.TITLE, Texture.class)));
         gameTitle.setScale(0.5f);
         gameTitle.setOrigin(gameTitle.getWidth()/2, gameTitle.getHeight()/2);
 
-        bPlay = createButton("button_play.png");
+        bPlay = createButton(Assets.BUTTON_PLAY);
         bPlay.addListener(new ClickListener()
         {
             @Override
@@ -76,7 +79,7 @@ public class MenuScreen implements Screen {
             }
         });
 
-        bScores = createButton("button_scores.png");
+        bScores = createButton(Assets.BUTTON_SCORES);
         bScores.addListener(new ClickListener()
         {
             @Override
@@ -92,6 +95,10 @@ public class MenuScreen implements Screen {
         stage.addActor(bPlay);
         stage.addActor(bScores);
         stage.addActor(gameTitle);
+    }
+
+    @Override
+    public void show() {
         Gdx.input.setInputProcessor(stage);
     }
 
@@ -139,6 +146,7 @@ public class MenuScreen implements Screen {
 
     @Override
     public void dispose() {
-
+        batch.dispose();
+        stage.dispose();
     }
 }
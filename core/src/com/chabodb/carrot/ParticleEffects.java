@@ -0,0 +1,112 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.ParticleEffect;
+import com.badlogic.gdx.graphics.g2d.ParticleEffectPool;
+import com.badlogic.gdx.graphics.g2d.ParticleEmitter;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Particle effects started by gameplay events, each event plays its own copy of the effect, taken from a pool
+ * At most a budget of copies are alive at once, the oldest one is cut off to make room for a new one
+ * Complete copies go back to the pool, and the pool is warmed up when it is created, so a burst of events
+ * allocates nothing
+ * @author Benoit Chabod
+ */
+class ParticleEffects {
+    final ParticleEffectPool pool;
+    final Array<ParticleEffectPool.PooledEffect> live;
+    final int budget;
+    // Transparency of the emitters of the effect, a faded copy gets it back when it is reused
+    final float[] highMin, highMax;
+
+    /**
+     * Main constructor for the ParticleEffects class
+     * @param prototype The effect to copy, already scaled to the world
+     * @param budget Maximum number of copies alive at once
+     */
+    ParticleEffects(ParticleEffect prototype, int budget) {
+        this.budget = budget;
+        pool = new ParticleEffectPool(prototype, budget, budget);
+        live = new Array<ParticleEffectPool.PooledEffect>(true, budget);
+        Array<ParticleEmitter> emitters = prototype.getEmitters();
+        highMin = new float[emitters.size];
+        highMax = new float[emitters.size];
+        for (int i = 0; i < emitters.size; i++) {
+            highMin[i] = emitters.get(i).getTransparency().getHighMin();
+            highMax[i] = emitters.get(i).getTransparency().getHighMax();
+        }
+        // Emitters create their particles the first time they need them, each copy fills its emitters beforehand
+        // and updates them once, which also loads the tables of MathUtils
+        for (int i = 0; i < budget; i++) {
+            ParticleEffectPool.PooledEffect effect = pool.obtain();
+            Array<ParticleEmitter> copies = effect.getEmitters();
+            for (int j = 0; j < copies.size; j++)
+                copies.get(j).addParticles(copies.get(j).getMaxParticleCount());
+            effect.update(GameWorld.STEP_TIME);
+            live.add(effect);
+        }
+        clear();
+    }
+
+    /**
+     * Starts a new copy of the effect
+     * @param x X coordinate of the effect
+     * @param y Y coordinate of the effect
+     * @return The copy, only valid while isLive() says so
+     */
+    ParticleEffectPool.PooledEffect spawn(float x, float y) {
+        if (live.size == budget)
+            live.removeIndex(0).free();
+        ParticleEffectPool.PooledEffect effect = pool.obtain();
+        fade(effect, 1);
+        effect.setPosition(x, y);
+        live.add(effect);
+        return effect;
+    }
+
+    /**
+     * Tells whether a copy is still playing, a copy that completed or was cut off may be reused by another event
+     */
+    boolean isLive(ParticleEffect effect) {
+        return effect != null && live.contains((ParticleEffectPool.PooledEffect) effect, true);
+    }
+
+    /**
+     * Fades the particles a copy emits from now on, the other copies are left as they are
+     * @param effect A live copy
+     * @param alpha Opacity relative to the effect, from 0 to 1
+     */
+    void fade(ParticleEffect effect, float alpha) {
+        Array<ParticleEmitter> emitters = effect.getEmitters();
+        for (int i = 0; i < emitters.size; i++)
+            emitters.get(i).getTransparency().setHigh(highMin[i] * alpha, highMax[i] * alpha);
+    }
+
+    /**
+     * Updates and draws every live copy, the ones that complete go back to the pool
+     * @param batch The batch to draw into
+     * @param delta Time elapsed since the last frame (in seconds)
+     */
+    void draw(Batch batch, float delta) {
+        for (int i = 0; i < live.size; ) {
+            ParticleEffectPool.PooledEffect effect = live.get(i);
+            effect.draw(batch, delta);
+            if (effect.isComplete()) {
+                live.removeIndex(i);
+                effect.free();
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Gives every copy back to the pool, for a new game
+     */
+    void clear() {
+        for (int i = 0; i < live.size; i++)
+            live.get(i).free();
+        live.clear();
+    }
+}
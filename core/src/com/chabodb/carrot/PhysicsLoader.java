@@ -0,0 +1,69 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.utils.Array;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lets the AssetManager load the collision fixtures of the Physics Body Editor
+ * The file is read and parsed on the loading thread, nothing is left for the render thread
+ * The model compiled by the desktop PhysicsCompiler is used, or the editor output while it is missing
+ * @author Benoit Chabod
+ */
+class PhysicsLoader extends AsynchronousAssetLoader<BodyEditorLoader, PhysicsLoader.PhysicsParameter> {
+    BodyEditorLoader loader;
+
+    /**
+     * Parameters of a physics file, there are none yet
+     */
+    static class PhysicsParameter extends AssetLoaderParameters<BodyEditorLoader> {
+    }
+
+    /**
+     * Main constructor for the PhysicsLoader class
+     * @param resolver Resolver of the file names
+     */
+    PhysicsLoader(FileHandleResolver resolver) {
+        super(resolver);
+        // The loader holds Box2D shapes, the natives must be there before the loading thread creates them
+        Box2D.init();
+    }
+
+    @Override
+    public void loadAsync(AssetManager manager, String fileName, FileHandle file, PhysicsParameter parameter) {
+        loader = read(file);
+    }
+
+    /**
+     * Reads the collision fixtures from a compiled model, or from the editor output next to it
+     * @param file The compiled model
+     * @return A loader holding the model
+     */
+    static BodyEditorLoader read(FileHandle file) {
+        if (file.exists())
+            return new BodyEditorLoader(ByteBuffer.wrap(file.readBytes()));
+        FileHandle source = file.sibling(Assets.PHYSICS_SOURCE);
+        Gdx.app.log("PhysicsLoader", file.name() + " is missing, parsing " + source.name() + " instead");
+        return new BodyEditorLoader(source);
+    }
+
+    @Override
+    public BodyEditorLoader loadSync(AssetManager manager, String fileName, FileHandle file, PhysicsParameter parameter) {
+        BodyEditorLoader result = loader;
+        loader = null;
+        return result;
+    }
+
+    @Override
+    public Array<AssetDescriptor> getDependencies(String fileName, FileHandle file, PhysicsParameter parameter) {
+        return null;
+    }
+}
@@ -0,0 +1,197 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Steps a GameWorld on its own thread at the fixed rate, so the cost of a step overlaps with drawing
+ * instead of stretching the frame. The render thread sends the input, the resizes and the profiler requests
+ * through a bounded CommandQueue, and draws the snapshots published after each step, without any lock
+ * The world belongs to this thread while it runs, a new game or a replay is only set up while it is stopped
+ * @author Benoit Chabod
+ */
+class PhysicsThread implements Runnable {
+    static final long STEP_NANOS = (long) (GameWorld.STEP_TIME * 1e9);
+
+    final GameWorld gameWorld;
+    final CommandQueue commands = new CommandQueue();
+    // Time spent in each phase of the steps, one frame per step, only touched by the thread stepping the world
+    final FrameProfiler profiler = new FrameProfiler();
+    // Copy of the steps the render thread asked for, handed over once profileCopied is set
+    final FrameProfiler profileCopy = new FrameProfiler();
+    volatile boolean profileCopied;
+    // Reused by the accelerometer input, on the render thread
+    final float[] rotationMatrix = new float[16];
+    Thread thread;
+    volatile boolean running;
+
+    /**
+     * Main constructor for the PhysicsThread class, the world records its steps into the profiler of the thread
+     * @param gameWorld The simulation to step
+     */
+    PhysicsThread(GameWorld gameWorld) {
+        this.gameWorld = gameWorld;
+        gameWorld.profiler = profiler;
+    }
+
+    boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Starts stepping the world, from now on only this thread touches it
+     */
+    void start() {
+        if (thread != null)
+            return;
+        gameWorld.onPhysicsThread = true;
+        running = true;
+        thread = new Thread(this, "Physics");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops stepping the world and waits for the last step, the world belongs to the caller again
+     * The commands sent before are applied on the calling thread
+     */
+    void stop() {
+        if (thread == null)
+            return;
+        running = false;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        thread = null;
+        gameWorld.onPhysicsThread = false;
+        applyCommands();
+    }
+
+    /**
+     * Reads the devices and sends their state to the world, called by the render thread every frame
+     */
+    void sendInput() {
+        if (Gdx.input.isPeripheralAvailable(Input.Peripheral.Accelerometer)) {
+            Gdx.input.getRotationMatrix(rotationMatrix);
+            commands.push(CommandQueue.TILT, 0, rotationMatrix[9], 0);
+        } else {
+            commands.push(CommandQueue.KEYS, GameWorld.keyDirection(), 0, 0);
+        }
+    }
+
+    /**
+     * Resizes the world, on this thread while it runs
+     * @param worldWidth Width of the visible world
+     * @param worldHeight Height of the visible world
+     */
+    void resize(float worldWidth, float worldHeight) {
+        if (thread != null)
+            commands.push(CommandQueue.RESIZE, 0, worldWidth, worldHeight);
+        else
+            gameWorld.resize(worldWidth, worldHeight);
+    }
+
+    /**
+     * Starts or stops recording the steps, on this thread while it runs
+     * @param enabled Whether the steps are recorded
+     */
+    void setProfiling(boolean enabled) {
+        if (thread != null)
+            commands.push(CommandQueue.PROFILE, enabled ? 1 : 0, 0, 0);
+        else
+            profiler.setEnabled(enabled);
+    }
+
+    /**
+     * Asks for a copy of the steps recorded so far, which takeProfile() gives once this thread made it
+     */
+    void copyProfile() {
+        if (thread != null) {
+            commands.push(CommandQueue.COPY_PROFILE, 0, 0, 0);
+        } else {
+            profiler.copyTo(profileCopy);
+            profileCopied = true;
+        }
+    }
+
+    /**
+     * Gives the copy asked for by copyProfile(), called by the render thread
+     * @return The copy, valid until copyProfile() is called again, or null if it is not made yet
+     */
+    FrameProfiler takeProfile() {
+        if (!profileCopied)
+            return null;
+        profileCopied = false;
+        return profileCopy;
+    }
+
+    /**
+     * Gives the fraction of a step elapsed since a snapshot was published, to draw in between its two positions
+     * @param snapshot The snapshot being drawn
+     * @return The interpolation factor, between 0 and 1
+     */
+    static float alpha(WorldSnapshot snapshot) {
+        float alpha = (float) (TimeUtils.nanoTime() - snapshot.time) / STEP_NANOS;
+        return Math.max(0, Math.min(alpha, 1));
+    }
+
+    @Override
+    public void run() {
+        long next = TimeUtils.nanoTime();
+        while (running) {
+            applyCommands();
+            if (!gameWorld.lost) {
+                profiler.beginFrame();
+                gameWorld.stepAndPublish();
+                profiler.endFrame(0, 0, 0, gameWorld.world.getBodyCount(), gameWorld.world.getContactCount());
+            }
+            next += STEP_NANOS;
+            long wait = next - TimeUtils.nanoTime();
+            if (wait > 0) {
+                // parkNanos() may return early for no reason, only stop() cuts the wait short
+                while (running && wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    wait = next - TimeUtils.nanoTime();
+                }
+            } else if (wait < -GameWorld.MAX_SUBSTEPS * STEP_NANOS) {
+                // Too far behind to catch up, the rest of the lag is dropped like GameWorld.update() does
+                next = TimeUtils.nanoTime();
+            }
+        }
+    }
+
+    private void applyCommands() {
+        while (!commands.isEmpty()) {
+            switch (commands.firstType()) {
+                case CommandQueue.KEYS:
+                    gameWorld.setInput(false, (byte) commands.firstValue(), 0);
+                    break;
+                case CommandQueue.TILT:
+                    gameWorld.setInput(true, InputRecording.NONE, commands.firstX());
+                    break;
+                case CommandQueue.RESIZE:
+                    gameWorld.resize(commands.firstX(), commands.firstY());
+                    break;
+                case CommandQueue.PROFILE:
+                    profiler.setEnabled(commands.firstValue() != 0);
+                    break;
+                case CommandQueue.COPY_PROFILE:
+                    profiler.copyTo(profileCopy);
+                    profileCopied = true;
+                    break;
+            }
+            commands.removeFirst();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.physics.box2d.Body;
+
+/**
+ * Ring buffer of the platforms of the level, stored as parallel arrays instead of one object per platform
+ * Platforms are added at the top and expire at the bottom, both in constant time
+ * Index 0 is always the lowest platform still in the level, so the buffer stays sorted by height
+ * @author Benoit Chabod
+ */
+class PlatformBuffer {
+    // Modes of platform, given by the item standing on it
+    static final int NORMAL = 0;
+    static final int CARROT = 1;
+    static final int SPRING = 2;
+    static final int JETPACK = 3;
+
+    float[] x, y;
+    int[] mode;
+    Body[] ground, item;
+    int head, size, mask;
+    // Number of platforms dropped since the beginning, so platforms can also be counted from the start of the level
+    int removed;
+
+    /**
+     * Main constructor for the PlatformBuffer class
+     * @param capacity Number of platforms the level is expected to hold at once, rounded to a power of two
+     */
+    PlatformBuffer(int capacity) {
+        allocate(MathUtils.nextPowerOfTwo(capacity));
+    }
+
+    private void allocate(int capacity) {
+        x = new float[capacity];
+        y = new float[capacity];
+        mode = new int[capacity];
+        ground = new Body[capacity];
+        item = new Body[capacity];
+        mask = capacity - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gives the number of platforms added since the beginning, including the ones dropped since
+     */
+    int added() {
+        return removed + size;
+    }
+
+    /**
+     * Gives the position in the arrays of a platform
+     * @param i Index of the platform, from the lowest one
+     * @return The slot of the platform in the arrays
+     */
+    int slot(int i) {
+        return (head + i) & mask;
+    }
+
+    float x(int i) {
+        return x[slot(i)];
+    }
+
+    float y(int i) {
+        return y[slot(i)];
+    }
+
+    int mode(int i) {
+        return mode[slot(i)];
+    }
+
+    Body ground(int i) {
+        return ground[slot(i)];
+    }
+
+    Body item(int i) {
+        return item[slot(i)];
+    }
+
+    /**
+     * Adds a platform on top of the others, it has no bodies until setBodies is called
+     * @param px X coordinate of the platform
+     * @param py Y coordinate of the platform, not lower than the last one added
+     * @param m Mode of the platform
+     */
+    void add(float px, float py, int m) {
+        if (size == x.length)
+            grow();
+        int s = slot(size);
+        x[s] = px;
+        y[s] = py;
+        mode[s] = m;
+        ground[s] = null;
+        item[s] = null;
+        size++;
+    }
+
+    /**
+     * Gives a platform its physics bodies
+     * @param i Index of the platform, from the lowest one
+     * @param g The body of the platform itself
+     * @param it The body of its item, or null for a normal platform
+     */
+    void setBodies(int i, Body g, Body it) {
+        int s = slot(i);
+        ground[s] = g;
+        item[s] = it;
+    }
+
+    /**
+     * Turns a platform back into a normal one once its item is gone
+     * @param i Index of the platform, from the lowest one
+     */
+    void clearItem(int i) {
+        int s = slot(i);
+        mode[s] = NORMAL;
+        item[s] = null;
+    }
+
+    /**
+     * Drops the lowest platform, its bodies must have been freed already
+     */
+    void removeFirst() {
+        ground[head] = null;
+        item[head] = null;
+        head = (head + 1) & mask;
+        size--;
+        removed++;
+    }
+
+    /**
+     * Drops every platform and starts counting from zero again, their bodies must have been freed already
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            int s = slot(i);
+            ground[s] = null;
+            item[s] = null;
+        }
+        head = 0;
+        size = 0;
+        removed = 0;
+    }
+
+    /**
+     * Copies the platforms of another buffer, without their bodies
+     * @param other The buffer to copy
+     */
+    void copyFrom(PlatformBuffer other) {
+        if (x.length != other.x.length)
+            allocate(other.x.length);
+        System.arraycopy(other.x, 0, x, 0, x.length);
+        System.arraycopy(other.y, 0, y, 0, y.length);
+        System.arraycopy(other.mode, 0, mode, 0, mode.length);
+        head = other.head;
+        size = other.size;
+        removed = other.removed;
+    }
+
+    /**
+     * Finds the first platform whose bottom is at or above a given height, using a binary search
+     * @param minY The height to search from
+     * @return The index of the platform, or the number of platforms if there is none
+     */
+    int firstFrom(float minY) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (y[slot(mid)] < minY)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Grows the buffer ahead of time, so it does not have to while the game runs
+     * @param capacity Number of platforms the level may hold at once
+     */
+    void ensureCapacity(int capacity) {
+        while (x.length < capacity)
+            grow();
+    }
+
+    /**
+     * Doubles the capacity, only if the level ever holds more platforms than expected
+     */
+    private void grow() {
+        float[] oldX = x, oldY = y;
+        int[] oldMode = mode;
+        Body[] oldGround = ground, oldItem = item;
+        int oldMask = mask;
+        allocate(x.length * 2);
+        for (int i = 0; i < size; i++) {
+            int s = (head + i) & oldMask;
+            x[i] = oldX[s];
+            y[i] = oldY[s];
+            mode[i] = oldMode[s];
+            ground[i] = oldGround[s];
+            item[i] = oldItem[s];
+        }
+        head = 0;
+    }
+}
@@ -0,0 +1,169 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Static geometry of the platforms, baked once per generated chunk into a SpriteCache
+ * Platforms never move, so each chunk is drawn with a single call instead of going through the batch
+ * every frame. A cache is released once all its platforms left the level, and reused for a later chunk
+ * @author Benoit Chabod
+ */
+class PlatformCaches implements Disposable {
+    // Platforms a cache can hold, a bigger chunk is split over several caches
+    static final int CACHE_SIZE = 64;
+
+    /**
+     * A cache and the platforms baked into it
+     */
+    static class Slot {
+        final SpriteCache cache;
+        int cacheId;
+        // Platforms baked, counted from the start of the level, the last one excluded
+        int end;
+        float bottom, top;
+        boolean used;
+
+        Slot(ShaderProgram shader) {
+            cache = new SpriteCache(CACHE_SIZE, shader, false);
+        }
+    }
+
+    final Array<Slot> slots = new Array<Slot>();
+    final TextureRegion region;
+    final float width, height;
+    // Shared by all the caches, which would otherwise compile one each
+    final ShaderProgram shader = createShader();
+    // Platforms baked so far, counted from the start of the level
+    int baked;
+
+    /**
+     * Main constructor for the PlatformCaches class
+     * @param region The image of a platform
+     * @param width Width of a platform
+     * @param height Height of a platform
+     */
+    PlatformCaches(TextureRegion region, float width, float height) {
+        this.region = region;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Releases the caches of expired chunks and bakes the platforms added since the last call
+     * @param platforms The platforms of the level
+     */
+    void update(PlatformBuffer platforms) {
+        for (int i = 0; i < slots.size; i++) {
+            Slot slot = slots.get(i);
+            if (slot.used && slot.end <= platforms.removed)
+                slot.used = false;
+        }
+        baked = Math.max(baked, platforms.removed);
+        while (baked < platforms.added()) {
+            Slot slot = obtain();
+            int end = Math.min(platforms.added(), baked + CACHE_SIZE);
+            slot.cache.clear();
+            slot.cache.beginCache();
+            for (int i = baked; i < end; i++) {
+                int index = i - platforms.removed;
+                slot.cache.add(region, platforms.x(index), platforms.y(index), width, height);
+            }
+            slot.cacheId = slot.cache.endCache();
+            slot.bottom = platforms.y(baked - platforms.removed);
+            slot.top = platforms.y(end - 1 - platforms.removed) + height;
+            slot.end = end;
+            slot.used = true;
+            baked = end;
+        }
+    }
+
+    /**
+     * Releases every cache, for a level starting over
+     */
+    void reset() {
+        for (int i = 0; i < slots.size; i++)
+            slots.get(i).used = false;
+        baked = 0;
+    }
+
+    /**
+     * Compiles the default shader of SpriteCache, whose own factory is not public in this version of libGDX
+     * @return A new shader, owned by the caller
+     */
+    static ShaderProgram createShader() {
+        String vertexShader = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+                + "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+                + "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+                + "uniform mat4 u_projectionViewMatrix;\n"
+                + "varying vec4 v_color;\n"
+                + "varying vec2 v_texCoords;\n"
+                + "void main()\n"
+                + "{\n"
+                + "   v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n"
+                + "   v_color.a = v_color.a * (255.0/254.0);\n"
+                + "   v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n"
+                + "   gl_Position = u_projectionViewMatrix * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n"
+                + "}\n";
+        String fragmentShader = "#ifdef GL_ES\n"
+                + "precision mediump float;\n"
+                + "#endif\n"
+                + "varying vec4 v_color;\n"
+                + "varying vec2 v_texCoords;\n"
+                + "uniform sampler2D u_texture;\n"
+                + "void main()\n"
+                + "{\n"
+                + "  gl_FragColor = v_color * texture2D(u_texture, v_texCoords);\n"
+                + "}";
+        ShaderProgram shader = new ShaderProgram(vertexShader, fragmentShader);
+        if (!shader.isCompiled())
+            throw new IllegalArgumentException("Error compiling shader: " + shader.getLog());
+        return shader;
+    }
+
+    private Slot obtain() {
+        for (int i = 0; i < slots.size; i++) {
+            if (!slots.get(i).used)
+                return slots.get(i);
+        }
+        Slot slot = new Slot(shader);
+        slots.add(slot);
+        return slot;
+    }
+
+    /**
+     * Draws the chunks intersecting a vertical window, outside of any batch
+     * @param projection The projection matrix of the camera
+     * @param bottom Bottom of the window
+     * @param top Top of the window
+     */
+    void draw(Matrix4 projection, float bottom, float top) {
+        // The batch turns blending off when it ends, platforms have transparent edges
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        for (int i = 0; i < slots.size; i++) {
+            Slot slot = slots.get(i);
+            if (!slot.used || slot.top < bottom || slot.bottom > top)
+                continue;
+            slot.cache.setProjectionMatrix(projection);
+            slot.cache.begin();
+            slot.cache.draw(slot.cacheId);
+            slot.cache.end();
+        }
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+    }
+
+    @Override
+    public void dispose() {
+        for (int i = 0; i < slots.size; i++)
+            slots.get(i).cache.dispose();
+        slots.clear();
+        shader.dispose();
+    }
+}
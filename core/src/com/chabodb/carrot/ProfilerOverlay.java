@@ -0,0 +1,119 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.physics.box2d.Box2DDebugRenderer;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Debug overlay of the GameScreen: outlines of the physics bodies, a graph of the last frames
+ * split by phase, and the counters of the last frame
+ * It is drawn after the frame is recorded, so it does not show up in its own measures
+ * @author Benoit Chabod
+ */
+class ProfilerOverlay implements Disposable {
+    // Colors of the phases, in the order of FrameProfiler.PHASE_NAMES
+    static final Color[] PHASE_COLORS = {Color.CYAN, Color.RED, Color.YELLOW, Color.GREEN, Color.MAGENTA, Color.ORANGE};
+    static final int GRAPH_FRAMES = 240;
+    static final float BAR_WIDTH = 2;
+    static final float PIXELS_PER_MS = 6;
+    static final float BUDGET_MS = 1000f / 60f;
+    static final float MARGIN = 10;
+    static final float TEXT_SCALE = 0.25f;
+
+    final Box2DDebugRenderer debugRenderer = new Box2DDebugRenderer();
+    final ShapeRenderer shapeRenderer = new ShapeRenderer();
+    final Matrix4 projection = new Matrix4();
+    final StringBuilder text = new StringBuilder();
+
+    /**
+     * Draws the overlay over the frame
+     * @param profiler The recorded frames
+     * @param world The physics world, drawn as outlines, or null when it cannot be read from this thread
+     * @param worldProjection The projection the world is drawn with
+     * @param batch A batch, not drawing yet
+     * @param font The font of the counters, its scale is restored afterwards
+     * @param width Width of the screen (in pixels)
+     * @param height Height of the screen (in pixels)
+     */
+    void draw(FrameProfiler profiler, World world, Matrix4 worldProjection, Batch batch, BitmapFont font, int width, int height) {
+        if (world != null)
+            debugRenderer.render(world, worldProjection);
+
+        projection.setToOrtho2D(0, 0, width, height);
+        shapeRenderer.setProjectionMatrix(projection);
+        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+        int count = Math.min(profiler.size(), GRAPH_FRAMES);
+        for (int i = 0; i < count; i++) {
+            int slot = profiler.slot(profiler.size() - count + i);
+            float x = MARGIN + i * BAR_WIDTH;
+            float y = MARGIN;
+            for (int phase = 0; phase < FrameProfiler.PHASES; phase++) {
+                float h = profiler.phase(slot, phase) / 1e6f * PIXELS_PER_MS;
+                shapeRenderer.setColor(PHASE_COLORS[phase]);
+                shapeRenderer.rect(x, y, BAR_WIDTH, h);
+                y += h;
+            }
+        }
+        // Time a frame has at 60 frames per second
+        shapeRenderer.setColor(Color.WHITE);
+        shapeRenderer.rect(MARGIN, MARGIN + BUDGET_MS * PIXELS_PER_MS, GRAPH_FRAMES * BAR_WIDTH, 1);
+        shapeRenderer.end();
+
+        if (profiler.size() == 0)
+            return;
+        int slot = profiler.slot(profiler.size() - 1);
+        float scaleX = font.getData().scaleX;
+        float scaleY = font.getData().scaleY;
+        font.getData().setScale(TEXT_SCALE);
+        batch.setProjectionMatrix(projection);
+        batch.begin();
+        float x = MARGIN;
+        float y = height - MARGIN;
+        text.setLength(0);
+        appendMillis(text.append("frame "), profiler.frameNanos[slot]);
+        y = drawLine(batch, font, Color.WHITE, x, y);
+        for (int phase = 0; phase < FrameProfiler.PHASES; phase++) {
+            text.setLength(0);
+            appendMillis(text.append(FrameProfiler.PHASE_NAMES[phase]).append(' '), profiler.phase(slot, phase));
+            y = drawLine(batch, font, PHASE_COLORS[phase], x, y);
+        }
+        text.setLength(0);
+        text.append("batch ").append(profiler.renderCalls[slot]).append(" draws ").append(profiler.drawCalls[slot]);
+        text.append(" binds ").append(profiler.textureBindings[slot]);
+        y = drawLine(batch, font, Color.WHITE, x, y);
+        text.setLength(0);
+        text.append("bodies ").append(profiler.bodies[slot]).append(" contacts ").append(profiler.contacts[slot]);
+        drawLine(batch, font, Color.WHITE, x, y);
+        batch.end();
+        font.getData().setScale(scaleX, scaleY);
+        font.setColor(Color.WHITE);
+    }
+
+    private float drawLine(Batch batch, BitmapFont font, Color color, float x, float y) {
+        font.setColor(color);
+        font.draw(batch, text, x, y);
+        return y - font.getLineHeight();
+    }
+
+    /**
+     * Appends a duration in milliseconds with two decimals, without going through a float
+     */
+    static void appendMillis(StringBuilder builder, long nanos) {
+        long hundredths = nanos / 10000;
+        builder.append(hundredths / 100).append('.');
+        if (hundredths % 100 < 10)
+            builder.append('0');
+        builder.append(hundredths % 100).append(" ms");
+    }
+
+    @Override
+    public void dispose() {
+        debugRenderer.dispose();
+        shapeRenderer.dispose();
+    }
+}
@@ -2,7 +2,6 @@ package com.chabodb.carrot;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
-import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
@@ -12,7 +11,6 @@ import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.Stage;
@@ -24,16 +22,10 @@ import com.badlogic.gdx.utils.TimeUtils;
 import com.badlogic.gdx.utils.viewport.ExtendViewport;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
 
-import java.io.BufferedReader;
 import java.io.FileReader;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.List;
 import java.util.PriorityQueue;
 
 /**
@@ -48,74 +40,51 @@ public class ScoreScreen implements Screen {
     BitmapFont font;
     Image scoreTitle;
     GlyphLayout layout;
-    perfComparator c = new perfComparator();
     ShapeRenderer shapeRenderer;
-    List<Performance> scores = new ArrayList<Performance>();
+    // Text of the best scores, built when the screen is shown
+    static final int SHOWN = 3;
+    final String[] shownRanks = new String[SHOWN];
+    final String[] shownDates = new String[SHOWN];
+    final String[] shownScores = new String[SHOWN];
+    int shown;
 
     /**
-     * Small class to compare two highscores
-     */
-    private class perfComparator implements Comparator<Performance>
-    {
-        public int compare(Performance p1, Performance p2)
-        {
-            return (p2.score - p1.score);
-        }
-    }
-
-    /**
-     * Small class to represent a highscore
-     */
-    private class Performance {
-        String date;
-        int score;
-
-        Performance(String s) {
-            String[] chunks = s.split("\\|");
-            try {
-                date = chunks[0];
-                score = Integer.parseInt(chunks[1].trim());
-            } catch (Exception e) {}
-        }
-    }
-
-    /**
-     * Main constructor for the ScoreScreen class
+     * Main constructor for the ScoreScreen class, the screen is reused every time the highscores are shown
      * @param g An instance of the main CarrotGame class
      */
     public ScoreScreen(CarrotGame g) {
         super();
+        game = g;
 
-        scoreTitle = new Image(new TextureRegion(new Texture(Gdx.files.internal("scores.png"))));
+        scoreTitle = new Image(new TextureRegion(game.assets.get(Assets.SCORES_TITLE, Texture.class)));
         scoreTitle.setOrigin(scoreTitle.getWidth()/2, scoreTitle.getHeight()/2);
 
         shapeRenderer = new ShapeRenderer();
-        FileHandle file = Gdx.files.local("scores.txt");
-        try {
-            BufferedReader br = file.reader(1024);
-            for(String line; (line = br.readLine()) != null; ) {
-                if (line.length() > 1) {
-                    scores.add(new Performance(line));
-                }
-            }
-        } catch (Exception e) {}
-        Collections.sort(scores, c);
-        game = g;
-    }
-
-    @Override
-    public void show() {
         camera = new OrthographicCamera();
         viewport = new ExtendViewport(1000, 1000, camera);
         batch = new SpriteBatch();
+        layout = new GlyphLayout();
+    }
 
-        FreeTypeFontGenerator generator = new FreeTypeFontGenerator(Gdx.files.internal("pamela.ttf"));
-        FreeTypeFontGenerator.FreeTypeFontParameter parameter = new FreeTypeFontGenerator.FreeTypeFontParameter();
-        parameter.size = 80;
-        font = generator.generateFont(parameter);
-        generator.dispose();
+    /**
+     * Takes the best scores of the store, which already holds them in order
+     */
+    private void readScores() {
+        HighscoreStore highscores = game.highscores;
+        DateFormat df = new SimpleDateFormat("dd/MM/yyyy");
+        shown = Math.min(SHOWN, highscores.size());
+        for (int rank = 0; rank < shown; rank++) {
+            shownRanks[rank] = Integer.toString(rank + 1);
+            shownDates[rank] = df.format(new Date(highscores.time(rank)));
+            shownScores[rank] = Integer.toString(highscores.score(rank));
+        }
+    }
 
-        layout = new GlyphLayout();
+    @Override
+    public void show() {
+        readScores();
+        font = game.font;
+        font.getData().setScale(1.0f);
     }
 
     @Override
@@ -148,14 +117,11 @@ public class ScoreScreen implements Screen {
         font.draw(batch, text, returnX, returnY);
 
         font.setColor(Color.WHITE);
-        Iterator it = scores.iterator();
-        int rank = 1;
-        while (it.hasNext() && rank <= 3){
-            Performance p = (Performance) it.next();
-            font.draw(batch, Integer.toString(rank), xRank + 100, textY - rank*120);
-            font.draw(batch, p.date, xDate - 100, textY - rank*120);
-            font.draw(batch, Integer.toString(p.score), xScore + 50, textY - rank*120);
-            rank++;
+        for (int i = 0; i < shown; i++) {
+            int rank = i + 1;
+            font.draw(batch, shownRanks[i], xRank + 100, textY - rank*120);
+            font.draw(batch, shownDates[i], xDate - 100, textY - rank*120);
+            font.draw(batch, shownScores[i], xScore + 50, textY - rank*120);
         }
 
         batch.end();
@@ -197,6 +163,7 @@ public class ScoreScreen implements Screen {
 
     @Override
     public void dispose() {
-
+        batch.dispose();
+        shapeRenderer.dispose();
     }
 }
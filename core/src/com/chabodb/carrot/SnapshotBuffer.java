@@ -0,0 +1,45 @@
+package com.chabodb.carrot;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands snapshots of the simulation over to the renderer without any lock
+ * The writer fills the back snapshot and publishes it, the reader takes the latest one published
+ * A third snapshot sits in between, so the writer never overwrites the snapshot being drawn and neither side waits
+ * There must be a single writer and a single reader at a time
+ * @author Benoit Chabod
+ */
+class SnapshotBuffer {
+    // Set on the middle index when it holds a snapshot the reader has not taken yet
+    static final int FRESH = 4;
+
+    final WorldSnapshot[] snapshots = {new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot()};
+    final AtomicInteger middle = new AtomicInteger(1);
+    // Only used by the writer
+    int back = 0;
+    // Only used by the reader
+    int front = 2;
+
+    /**
+     * Gives the snapshot to fill, writer side
+     */
+    WorldSnapshot back() {
+        return snapshots[back];
+    }
+
+    /**
+     * Makes the back snapshot the latest one and gives the writer another one to fill
+     */
+    void publish() {
+        back = middle.getAndSet(back | FRESH) & (FRESH - 1);
+    }
+
+    /**
+     * Gives the latest snapshot published, reader side, it stays valid until the next call
+     */
+    WorldSnapshot front() {
+        if ((middle.get() & FRESH) != 0)
+            front = middle.getAndSet(front) & (FRESH - 1);
+        return snapshots[front];
+    }
+}
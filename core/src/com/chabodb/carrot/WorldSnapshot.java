@@ -0,0 +1,84 @@
+package com.chabodb.carrot;
+
+import com.badlogic.gdx.utils.FloatArray;
+
+/**
+ * What the GameScreen draws of the simulation, copied out of the GameWorld after it steps
+ * The screen only reads snapshots, so it never touches the physics world, which may be stepping on a PhysicsThread
+ * Moving things keep their positions before and after the step, to be drawn in between
+ * @author Benoit Chabod
+ */
+class WorldSnapshot {
+    // Step count and time (in nanoseconds) when the snapshot was taken
+    int step;
+    long time;
+    // Fraction of a step the world is ahead of it, when the world is updated on the render thread
+    float alpha;
+    boolean lost;
+    int score;
+    int counterJetpack;
+    // Running counts of the items picked up, an effect is started whenever one changes
+    int carrotsEaten, jetpacksPicked;
+    final float[] eatenX = new float[GameWorld.EATEN_HISTORY], eatenY = new float[GameWorld.EATEN_HISTORY];
+    float cameraX, cameraY, prevCameraY;
+    float bunnyX, bunnyY, prevBunnyX, prevBunnyY, bunnyAngle;
+    int bodies, contacts;
+
+    // Platforms of the level, their items are stored at the same slots
+    final PlatformBuffer platforms = new PlatformBuffer(64);
+    int materialisedPlatforms;
+    float[] itemX = new float[0], itemY = new float[0];
+    boolean[] itemUsed = new boolean[0];
+
+    // Materialised enemies, lowest first
+    final FloatArray enemyX = new FloatArray(), enemyY = new FloatArray();
+    final FloatArray prevEnemyX = new FloatArray(), prevEnemyY = new FloatArray();
+
+    /**
+     * Makes room for the items of as many platforms as the buffer can hold
+     */
+    void ensureItems(int capacity) {
+        if (itemX.length == capacity)
+            return;
+        itemX = new float[capacity];
+        itemY = new float[capacity];
+        itemUsed = new boolean[capacity];
+    }
+
+    float cameraY(float alpha) {
+        return prevCameraY + (cameraY - prevCameraY) * alpha;
+    }
+
+    float bunnyX(float alpha) {
+        return prevBunnyX + (bunnyX - prevBunnyX) * alpha;
+    }
+
+    float bunnyY(float alpha) {
+        return prevBunnyY + (bunnyY - prevBunnyY) * alpha;
+    }
+
+    float enemyX(int i, float alpha) {
+        return prevEnemyX.get(i) + (enemyX.get(i) - prevEnemyX.get(i)) * alpha;
+    }
+
+    float enemyY(int i, float alpha) {
+        return prevEnemyY.get(i) + (enemyY.get(i) - prevEnemyY.get(i)) * alpha;
+    }
+
+    /**
+     * Finds the first enemy whose bottom is at or above a given height, using a binary search
+     * @param y The height to search from
+     * @return The index of the enemy, or the number of enemies if there is none
+     */
+    int firstEnemyFrom(float y) {
+        int low = 0, high = enemyY.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (enemyY.get(mid) < y)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
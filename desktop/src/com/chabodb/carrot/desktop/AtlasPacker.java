@@ -0,0 +1,118 @@
+package com.chabodb.carrot.desktop;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.tools.texturepacker.TexturePacker;
+import com.chabodb.carrot.Assets;
+import com.chabodb.carrot.GameScreen;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Build tool that repacks the regions used by the game into a single page atlas
+ * The regions are cut out of the source atlas, then packed again with the TexturePacker,
+ * so the game never switches textures while drawing. It fails if a region is missing
+ * @author Benoit Chabod
+ */
+public class AtlasPacker {
+
+    /**
+     * Entry point of the tool
+     * @param args The source atlas and the output directory
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: AtlasPacker <source.atlas> <output directory>");
+            System.exit(2);
+        }
+        FileHandle source = new FileHandle(new File(args[0]));
+        File output = new File(args[1]);
+        String name = Assets.ATLAS.substring(0, Assets.ATLAS.lastIndexOf('.'));
+        try {
+            pack(source, output, name);
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Repacks the regions listed in GameScreen.REGIONS
+     * @param source The source atlas
+     * @param output The directory where the new atlas and its page are written
+     * @param name The name of the new atlas, without extension
+     */
+    static void pack(FileHandle source, File output, String name) throws IOException {
+        TextureAtlas.TextureAtlasData data = new TextureAtlas.TextureAtlasData(source, source.parent(), false);
+        HashMap<String, TextureAtlas.TextureAtlasData.Region> regions = new HashMap<String, TextureAtlas.TextureAtlasData.Region>();
+        for (TextureAtlas.TextureAtlasData.Region region : data.getRegions()) {
+            // Same lookup as TextureAtlas.findRegion, the first region of a name wins
+            if (!regions.containsKey(region.name))
+                regions.put(region.name, region);
+        }
+
+        File images = new File(System.getProperty("java.io.tmpdir"), name + "-regions-" + System.nanoTime());
+        if (!images.mkdirs())
+            throw new IOException("Cannot create " + images);
+        HashMap<TextureAtlas.TextureAtlasData.Page, BufferedImage> pages = new HashMap<TextureAtlas.TextureAtlasData.Page, BufferedImage>();
+        try {
+            for (String regionName : GameScreen.REGIONS) {
+                TextureAtlas.TextureAtlasData.Region region = regions.get(regionName);
+                if (region == null)
+                    throw new IllegalStateException("Region " + regionName + " is missing from " + source.path());
+                if (region.rotate)
+                    throw new IllegalStateException("Region " + regionName + " is rotated in " + source.path() + ", pack the source without rotation");
+                BufferedImage page = pages.get(region.page);
+                if (page == null) {
+                    page = ImageIO.read(region.page.textureFile.file());
+                    pages.put(region.page, page);
+                }
+                ImageIO.write(extract(page, region), "png", new File(images, regionName + ".png"));
+            }
+
+            TexturePacker.Settings settings = new TexturePacker.Settings();
+            settings.maxWidth = 1024;
+            settings.maxHeight = 1024;
+            settings.paddingX = 2;
+            settings.paddingY = 2;
+            settings.duplicatePadding = true;
+            settings.stripWhitespaceX = false;
+            settings.stripWhitespaceY = false;
+            settings.filterMin = Texture.TextureFilter.Nearest;
+            settings.filterMag = Texture.TextureFilter.Nearest;
+            TexturePacker.process(settings, images.getPath(), output.getPath(), name);
+        } finally {
+            File[] files = images.listFiles();
+            if (files != null) {
+                for (File file : files)
+                    file.delete();
+            }
+            images.delete();
+        }
+
+        FileHandle packed = new FileHandle(new File(output, name + ".atlas"));
+        TextureAtlas.TextureAtlasData result = new TextureAtlas.TextureAtlasData(packed, packed.parent(), false);
+        if (result.getPages().size != 1)
+            throw new IllegalStateException(packed.path() + " spans " + result.getPages().size + " pages, raise the maximum page size");
+        System.out.println("Packed " + GameScreen.REGIONS.length + " regions into " + packed.path());
+    }
+
+    /**
+     * Cuts a region out of its page, restoring the whitespace the source packer may have stripped
+     */
+    static BufferedImage extract(BufferedImage page, TextureAtlas.TextureAtlasData.Region region) {
+        BufferedImage image = new BufferedImage(region.originalWidth, region.originalHeight, BufferedImage.TYPE_INT_ARGB);
+        // Offsets are measured from the bottom left corner of the original image
+        int x = (int) region.offsetX;
+        int y = region.originalHeight - region.height - (int) region.offsetY;
+        // Pixels are copied as they are, drawing them would blend the translucent ones
+        int[] pixels = page.getRGB(region.left, region.top, region.width, region.height, null, 0, region.width);
+        image.setRGB(x, y, region.width, region.height, pixels, 0, region.width);
+        return image;
+    }
+}
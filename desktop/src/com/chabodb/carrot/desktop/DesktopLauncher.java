@@ -4,9 +4,21 @@ import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import com.chabodb.carrot.CarrotGame;
 
+import java.io.File;
+
 public class DesktopLauncher {
 	public static void main (String[] arg) {
 		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
-		new LwjglApplication(new CarrotGame(), config);
+		// "--replay <file>" plays a recorded game instead of opening the menu
+		// "--physics-thread" steps the simulation on its own thread
+		String replay = null;
+		boolean physicsThread = false;
+		for (int i = 0; i < arg.length; i++) {
+			if (arg[i].equals("--replay") && i + 1 < arg.length)
+				replay = new File(arg[++i]).getAbsolutePath();
+			else if (arg[i].equals("--physics-thread"))
+				physicsThread = true;
+		}
+		new LwjglApplication(new CarrotGame(replay, physicsThread), config);
 	}
 }
@@ -0,0 +1,51 @@
+package com.chabodb.carrot.desktop;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.tools.bmfont.BitmapFontWriter;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.chabodb.carrot.Assets;
+
+import java.io.File;
+
+/**
+ * Build tool that rasterises the TrueType font of the game once, into a bitmap font the game loads as is
+ * This way no screen has to run FreeType when it is shown
+ * @author Benoit Chabod
+ */
+public class FontBaker {
+
+    /**
+     * Entry point of the tool
+     * @param args The TrueType font and the output directory
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: FontBaker <font.ttf> <output directory>");
+            System.exit(2);
+        }
+        GdxNativesLoader.load();
+        FileHandle output = new FileHandle(new File(args[1]));
+        String name = Assets.FONT.substring(0, Assets.FONT.lastIndexOf('.'));
+
+        FreeTypeFontGenerator generator = new FreeTypeFontGenerator(new FileHandle(new File(args[0])));
+        PixmapPacker packer = new PixmapPacker(1024, 1024, Pixmap.Format.RGBA8888, 2, false);
+        FreeTypeFontGenerator.FreeTypeFontParameter parameter = new FreeTypeFontGenerator.FreeTypeFontParameter();
+        parameter.size = Assets.FONT_SIZE;
+        parameter.packer = packer;
+        FreeTypeFontGenerator.FreeTypeBitmapFontData data = generator.generateData(parameter);
+
+        BitmapFontWriter.FontInfo info = new BitmapFontWriter.FontInfo();
+        info.face = name;
+        info.size = Assets.FONT_SIZE;
+        info.padding = new BitmapFontWriter.Padding(0, 0, 0, 0);
+        String[] pages = BitmapFontWriter.writePixmaps(packer.getPages(), output, name);
+        BitmapFontWriter.writeFont(data, pages, output.child(Assets.FONT), info, packer.getPageWidth(), packer.getPageHeight());
+
+        System.out.println("Baked " + args[0] + " into " + pages.length + " page(s) of " + output.child(Assets.FONT).path());
+        generator.dispose();
+        packer.dispose();
+    }
+}
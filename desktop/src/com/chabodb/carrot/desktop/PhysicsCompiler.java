@@ -0,0 +1,98 @@
+package com.chabodb.carrot.desktop;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.chabodb.carrot.Assets;
+import com.chabodb.carrot.BodyEditorLoader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Build tool that compiles the output of the Physics Body Editor into the binary model read by BodyEditorLoader
+ * Only the bodies the game uses are kept, so the game neither parses JSON nor loads unused bodies
+ * It fails if one of these bodies is missing
+ * @author Benoit Chabod
+ */
+public class PhysicsCompiler {
+
+    /**
+     * Entry point of the tool
+     * @param args The editor output and the output directory
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: PhysicsCompiler <physics.json> <output directory>");
+            System.exit(2);
+        }
+        // The loader holds Box2D shapes even when it only reads the model
+        Box2D.init();
+        File output = new File(args[1], Assets.PHYSICS);
+        try {
+            compile(new FileHandle(new File(args[0])), output);
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes the bodies listed in Assets.physicsBodies() in the binary format
+     * @param source The editor output
+     * @param output The compiled model to write
+     */
+    static void compile(FileHandle source, File output) throws IOException {
+        BodyEditorLoader.Model model = new BodyEditorLoader(source).getInternalModel();
+        String[] names = Assets.physicsBodies();
+        for (String name : names) {
+            if (!model.rigidBodies.containsKey(name))
+                throw new IllegalStateException("Body " + name + " is missing from " + source.path());
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+        try {
+            out.writeInt(BodyEditorLoader.BINARY_MAGIC);
+            out.writeInt(BodyEditorLoader.BINARY_VERSION);
+            out.writeInt(names.length);
+            for (String name : names)
+                write(out, model.rigidBodies.get(name));
+        } finally {
+            out.close();
+        }
+        System.out.println("Compiled " + names.length + " of " + model.rigidBodies.size() + " bodies into " + output.getPath() + " (" + output.length() + " bytes)");
+    }
+
+    static void write(DataOutputStream out, BodyEditorLoader.RigidBodyModel body) throws IOException {
+        writeString(out, body.name);
+        // A body drawn with no image keeps a null path, rather than an empty one
+        out.writeBoolean(body.imagePath != null);
+        if (body.imagePath != null)
+            writeString(out, body.imagePath);
+        out.writeFloat(body.origin.x);
+        out.writeFloat(body.origin.y);
+        out.writeInt(body.polygons.size());
+        for (BodyEditorLoader.PolygonModel polygon : body.polygons) {
+            out.writeInt(polygon.vertices.length / 2);
+            for (float value : polygon.vertices)
+                out.writeFloat(value);
+        }
+        out.writeInt(body.circles.size());
+        for (BodyEditorLoader.CircleModel circle : body.circles) {
+            out.writeFloat(circle.center.x);
+            out.writeFloat(circle.center.y);
+            out.writeFloat(circle.radius);
+        }
+    }
+
+    /**
+     * Writes a short length followed by the UTF-8 bytes, as the loader reads it
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}